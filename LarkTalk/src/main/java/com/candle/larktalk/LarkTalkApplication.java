@@ -1,13 +1,19 @@
 package com.candle.larktalk;
 
+import com.candle.larktalk.startup.StartupTimings;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class LarkTalkApplication {
 
     public static void main(String[] args) {
-        SpringApplication.run(LarkTalkApplication.class, args);
+        StartupTimings timings = new StartupTimings();
+        SpringApplication application = new SpringApplication(LarkTalkApplication.class);
+        application.addListeners(timings);
+        application.run(args);
     }
 
 }
@@ -0,0 +1,100 @@
+package com.candle.larktalk.cache;
+
+import com.candle.larktalk.cluster.ClusterEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * UTF-8 JSON of individual messages, keyed by message id, so history reads can stream
+ * cached bytes instead of mapping and re-encoding every message.
+ * <p>
+ * Bounded by total size ({@code larktalk.messages.fragment-cache-bytes}); fragments over
+ * {@code larktalk.messages.fragment-max-bytes} are not cached so a single large message
+ * can't flush the rest. Eviction is insertion order, which for ever-increasing message ids
+ * means oldest messages go first. Reads are lock-free. Entries are dropped when a message
+ * changes on any node.
+ */
+@Component
+public class MessageFragmentCache {
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+
+    // Swapped as a whole by clear(), so a put racing with it lands in the discarded generation
+    private volatile Generation current = new Generation();
+
+    public MessageFragmentCache(@Value("${larktalk.messages.fragment-cache-bytes:33554432}") long maxBytes,
+                                @Value("${larktalk.messages.fragment-max-bytes:131072}") long maxEntryBytes) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = Math.min(maxBytes, maxEntryBytes);
+    }
+
+    public byte[] get(Long messageId) {
+        return current.fragments.get(messageId);
+    }
+
+    public void put(Long messageId, byte[] json) {
+        if (json.length > maxEntryBytes) {
+            return;
+        }
+        Generation generation = current;
+        byte[] previous = generation.fragments.put(messageId, json);
+        if (previous == null) {
+            generation.insertionOrder.add(messageId);
+        }
+        generation.totalBytes.addAndGet(json.length - (previous != null ? previous.length : 0));
+        generation.evictOverflow(maxBytes);
+    }
+
+    public void invalidate(Long messageId) {
+        current.invalidate(messageId);
+    }
+
+    public void clear() {
+        current = new Generation();
+    }
+
+    public long sizeInBytes() {
+        return current.totalBytes.get();
+    }
+
+    @EventListener
+    void onClusterEvent(ClusterEvent event) {
+        if (event.type() == ClusterEvent.Type.MESSAGE_UPDATED && event.subjectId() != null) {
+            invalidate(event.subjectId());
+        } else if (event.type() == ClusterEvent.Type.RESYNC) {
+            clear();
+        }
+    }
+
+    private static final class Generation {
+        final Map<Long, byte[]> fragments = new ConcurrentHashMap<>();
+        final Queue<Long> insertionOrder = new ConcurrentLinkedQueue<>();
+        final AtomicLong totalBytes = new AtomicLong();
+
+        void invalidate(Long messageId) {
+            byte[] removed = fragments.remove(messageId);
+            if (removed != null) {
+                totalBytes.addAndGet(-removed.length);
+            }
+        }
+
+        void evictOverflow(long maxBytes) {
+            while (totalBytes.get() > maxBytes) {
+                Long oldest = insertionOrder.poll();
+                if (oldest == null) {
+                    return;
+                }
+                // Ids of already invalidated entries may still be queued, removing them is a no-op
+                invalidate(oldest);
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.candle.larktalk.cluster;
+
+import com.candle.larktalk.repository.MessageRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long-poll live delivery. A client parks a request until a message newer than the one it
+ * has already seen lands in the channel, on this node or on any other (via {@link ClusterEventBus}),
+ * then re-reads the history. Responses only carry the latest id, so waking waiters costs no DB work.
+ * A RESYNC (lost notifications) is the exception: each watched channel's latest id is read from
+ * the DB once and every waiter behind it is completed.
+ */
+@Component
+public class ChannelWatchers {
+
+    private final MessageRepository messageRepository;
+    private final long timeoutMs;
+    private final int maxWaiters;
+
+    private final Map<Long, Set<Waiter>> waiters = new ConcurrentHashMap<>();
+    private final Map<Long, Long> latestMessageIds = new ConcurrentHashMap<>();
+    private final AtomicInteger waiterCount = new AtomicInteger();
+
+    public ChannelWatchers(MessageRepository messageRepository,
+                           @Value("${larktalk.live.poll-timeout-ms:25000}") long timeoutMs,
+                           @Value("${larktalk.live.max-waiters:10000}") int maxWaiters) {
+        this.messageRepository = messageRepository;
+        this.timeoutMs = timeoutMs;
+        this.maxWaiters = maxWaiters;
+    }
+
+    record Update(Long chatId, Long latestMessageId) {}
+
+    /**
+     * Completes with 200 and the latest message id once the channel has messages after
+     * {@code afterId}, with 204 on timeout, or with 503 when too many clients are waiting.
+     */
+    public DeferredResult<ResponseEntity<?>> await(Long chatId, long afterId) {
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>(timeoutMs, ResponseEntity.noContent().build());
+
+        if (waiterCount.incrementAndGet() > maxWaiters) {
+            waiterCount.decrementAndGet();
+            result.setResult(ResponseEntity.status(503).body(Map.of("success", false, "message", "Too many live clients")));
+            return result;
+        }
+
+        Waiter waiter = new Waiter(afterId, result);
+        waiters.compute(chatId, (id, set) -> {
+            Set<Waiter> channelWaiters = set != null ? set : ConcurrentHashMap.newKeySet();
+            channelWaiters.add(waiter);
+            return channelWaiters;
+        });
+        result.onCompletion(() -> {
+            waiterCount.decrementAndGet();
+            waiters.computeIfPresent(chatId, (id, set) -> {
+                set.remove(waiter);
+                return set.isEmpty() ? null : set;
+            });
+        });
+
+        // Registered first, so a message saved in between is either seen here or wakes the waiter
+        long latest = latestMessageId(chatId);
+        if (latest > afterId) {
+            result.setResult(ResponseEntity.ok(new Update(chatId, latest)));
+        }
+        return result;
+    }
+
+    @EventListener
+    void onClusterEvent(ClusterEvent event) {
+        if (event.type() == ClusterEvent.Type.RESYNC) {
+            // Notifications may have been lost, so re-read the channels someone is waiting on
+            latestMessageIds.clear();
+            for (Long chatId : waiters.keySet()) {
+                wake(chatId, latestMessageId(chatId));
+            }
+            return;
+        }
+        if (event.type() != ClusterEvent.Type.MESSAGE_CREATED || event.channelId() == null || event.subjectId() == null) {
+            return;
+        }
+        wake(event.channelId(), latestMessageIds.merge(event.channelId(), event.subjectId(), Math::max));
+    }
+
+    private void wake(Long chatId, long latest) {
+        Set<Waiter> channelWaiters = waiters.get(chatId);
+        if (channelWaiters == null) {
+            return;
+        }
+        for (Waiter waiter : channelWaiters) {
+            if (latest > waiter.afterId()) {
+                waiter.result().setResult(ResponseEntity.ok(new Update(chatId, latest)));
+            }
+        }
+    }
+
+    private long latestMessageId(Long chatId) {
+        Long known = latestMessageIds.get(chatId);
+        if (known != null) {
+            return known;
+        }
+        Long fromDb = messageRepository.findMaxIdByChannelId(chatId);
+        long latest = fromDb != null ? fromDb : 0L;
+        return latestMessageIds.merge(chatId, latest, Math::max);
+    }
+
+    private record Waiter(long afterId, DeferredResult<ResponseEntity<?>> result) {}
+}
@@ -0,0 +1,50 @@
+package com.candle.larktalk.cluster;
+
+/**
+ * Change notification shared between LarkTalk nodes.
+ *
+ * @param channelId affected channel, may be null when unknown
+ * @param subjectId message, user or setting id depending on {@code type}
+ * @param remote    true when the event was received from another node
+ */
+public record ClusterEvent(Type type, Long channelId, Long subjectId, boolean remote) {
+
+    public enum Type {
+        MESSAGE_CREATED('C'),    // subjectId = highest new message id in the channel
+        MESSAGE_UPDATED('U'),    // subjectId = message id
+        MEMBERSHIP_CHANGED('M'), // subjectId = user id
+        SETTING_CHANGED('S'),    // subjectId = setting id
+        RESYNC('R');             // local only: events may have been missed, drop all cached state
+
+        final char code;
+
+        Type(char code) {
+            this.code = code;
+        }
+
+        static Type fromCode(char code) {
+            for (Type type : values()) {
+                if (type.code == code) {
+                    return type;
+                }
+            }
+            throw new IllegalArgumentException("Unknown cluster event code: " + code);
+        }
+    }
+
+    public static ClusterEvent messageCreated(Long channelId, Long messageId) {
+        return new ClusterEvent(Type.MESSAGE_CREATED, channelId, messageId, false);
+    }
+
+    public static ClusterEvent messageUpdated(Long channelId, Long messageId) {
+        return new ClusterEvent(Type.MESSAGE_UPDATED, channelId, messageId, false);
+    }
+
+    public static ClusterEvent membershipChanged(Long channelId, Long userId) {
+        return new ClusterEvent(Type.MEMBERSHIP_CHANGED, channelId, userId, false);
+    }
+
+    public static ClusterEvent settingChanged(Long channelId, Long settingId) {
+        return new ClusterEvent(Type.SETTING_CHANGED, channelId, settingId, false);
+    }
+}
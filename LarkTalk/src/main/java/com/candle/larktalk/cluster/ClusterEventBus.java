@@ -0,0 +1,255 @@
+package com.candle.larktalk.cluster;
+
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cluster-wide event bus on top of PostgreSQL LISTEN/NOTIFY.
+ * <p>
+ * {@link #publish} delivers the event to local {@code @EventListener}s right away and queues it
+ * for the other nodes. Queued events are coalesced (e.g. several new messages in one channel
+ * become a single "up to id N" event) and flushed as a few NOTIFY payloads every
+ * {@code larktalk.cluster.flush-interval-ms}. Events from other nodes are re-published locally
+ * with {@code remote = true}.
+ */
+@Component
+public class ClusterEventBus {
+
+    private static final Logger log = LoggerFactory.getLogger(ClusterEventBus.class);
+
+    private static final String CHANNEL = "larktalk_events";
+    private static final int MAX_PAYLOAD_LENGTH = 7000; // NOTIFY limit is 8000 bytes
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
+    private final boolean enabled;
+
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+    private final Map<CoalesceKey, ClusterEvent> pending = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    public ClusterEventBus(ApplicationEventPublisher eventPublisher, JdbcTemplate jdbcTemplate, DataSource dataSource,
+                           @Value("${larktalk.cluster.enabled:true}") boolean enabled) {
+        this.eventPublisher = eventPublisher;
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSource = dataSource;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Publishes the event locally and to the other nodes. Inside a transaction this is
+     * deferred until after commit, so no node can observe the change before it is visible.
+     */
+    public void publish(ClusterEvent event) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatch(event);
+                }
+            });
+        } else {
+            dispatch(event);
+        }
+    }
+
+    private void dispatch(ClusterEvent event) {
+        eventPublisher.publishEvent(event);
+        if (enabled) {
+            pending.merge(CoalesceKey.of(event), event, ClusterEventBus::coalesce);
+        }
+    }
+
+    static ClusterEvent coalesce(ClusterEvent queued, ClusterEvent next) {
+        if (queued.type() == ClusterEvent.Type.MESSAGE_CREATED
+                && queued.subjectId() != null && next.subjectId() != null
+                && queued.subjectId() > next.subjectId()) {
+            return queued;
+        }
+        return next;
+    }
+
+    @Scheduled(fixedDelayString = "${larktalk.cluster.flush-interval-ms:50}")
+    void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<ClusterEvent> events = new ArrayList<>();
+        for (CoalesceKey key : pending.keySet()) {
+            ClusterEvent event = pending.remove(key);
+            if (event != null) {
+                events.add(event);
+            }
+        }
+
+        List<Payload> payloads = toPayloads(nodeId, events, MAX_PAYLOAD_LENGTH);
+        for (int i = 0; i < payloads.size(); i++) {
+            try {
+                jdbcTemplate.queryForObject("select pg_notify(?, ?)", String.class, CHANNEL, payloads.get(i).text());
+            } catch (Exception e) {
+                // Put the unsent events back for the next flush, otherwise peers would keep stale state
+                // (e.g. a cached latest message id) until something else happens in the same channel
+                int unsent = 0;
+                for (Payload payload : payloads.subList(i, payloads.size())) {
+                    payload.events().forEach(this::requeue);
+                    unsent += payload.events().size();
+                }
+                log.warn("Could not publish cluster events, {} requeued", unsent, e);
+                return;
+            }
+        }
+    }
+
+    // Anything queued meanwhile is newer, so it wins unless the requeued event supersedes it
+    private void requeue(ClusterEvent event) {
+        pending.merge(CoalesceKey.of(event), event, (queued, requeued) -> coalesce(requeued, queued));
+    }
+
+    record Payload(String text, List<ClusterEvent> events) {}
+
+    /**
+     * Packs events into {@code <node id>;<event>;<event>...} payloads of at most {@code maxLength} chars.
+     */
+    static List<Payload> toPayloads(String nodeId, List<ClusterEvent> events, int maxLength) {
+        List<Payload> payloads = new ArrayList<>();
+        StringBuilder text = new StringBuilder(nodeId);
+        List<ClusterEvent> batch = new ArrayList<>();
+        for (ClusterEvent event : events) {
+            String encoded = encode(event);
+            if (!batch.isEmpty() && text.length() + encoded.length() + 1 > maxLength) {
+                payloads.add(new Payload(text.toString(), batch));
+                text = new StringBuilder(nodeId);
+                batch = new ArrayList<>();
+            }
+            text.append(';').append(encoded);
+            batch.add(event);
+        }
+        if (!batch.isEmpty()) {
+            payloads.add(new Payload(text.toString(), batch));
+        }
+        return payloads;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void startListening() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        listenerThread = new Thread(this::listen, "cluster-event-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @PreDestroy
+    void stopListening() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+    }
+
+    private void listen() {
+        boolean connectedBefore = false;
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                if (connectedBefore) {
+                    // Notifications sent while we were disconnected are lost
+                    eventPublisher.publishEvent(new ClusterEvent(ClusterEvent.Type.RESYNC, null, null, true));
+                }
+                connectedBefore = true;
+                log.info("Node {} listening for cluster events", nodeId);
+
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(500);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        receive(notification.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Cluster event listener lost its connection, reconnecting", e);
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void receive(String payload) {
+        String[] parts = payload.split(";");
+        if (parts.length == 0 || nodeId.equals(parts[0])) {
+            return;
+        }
+        for (int i = 1; i < parts.length; i++) {
+            try {
+                eventPublisher.publishEvent(decode(parts[i]));
+            } catch (RuntimeException e) {
+                log.warn("Failed to handle cluster event '{}'", parts[i], e);
+            }
+        }
+    }
+
+    // <type code>,<channel id>,<subject id> with empty fields for nulls
+    static String encode(ClusterEvent event) {
+        return event.type().code + "," + nullToEmpty(event.channelId()) + "," + nullToEmpty(event.subjectId());
+    }
+
+    static ClusterEvent decode(String encoded) {
+        String[] fields = encoded.split(",", -1);
+        return new ClusterEvent(ClusterEvent.Type.fromCode(fields[0].charAt(0)),
+                emptyToNull(fields[1]), emptyToNull(fields[2]), true);
+    }
+
+    private static String nullToEmpty(Long value) {
+        return value == null ? "" : value.toString();
+    }
+
+    private static Long emptyToNull(String value) {
+        return value.isEmpty() ? null : Long.parseLong(value);
+    }
+
+    // New-message events coalesce per channel, everything else per subject
+    record CoalesceKey(ClusterEvent.Type type, Long channelId, Long subjectId) {
+        static CoalesceKey of(ClusterEvent event) {
+            Long subject = event.type() == ClusterEvent.Type.MESSAGE_CREATED ? null : event.subjectId();
+            return new CoalesceKey(event.type(), event.channelId(), subject);
+        }
+    }
+}
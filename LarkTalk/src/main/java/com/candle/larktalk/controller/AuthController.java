@@ -1,5 +1,7 @@
 package com.candle.larktalk.controller;
 
+import com.candle.larktalk.cluster.ClusterEvent;
+import com.candle.larktalk.cluster.ClusterEventBus;
 import com.candle.larktalk.model.*;
 import com.candle.larktalk.repository.*;
 import com.candle.larktalk.request.UserRequest;
@@ -21,16 +23,18 @@ public class AuthController {
     private final RoleRepository roleRepository;
     private final ChannelRepository channelRepository;
     private final UserChannelAccessRepository accessRepository;
+    private final ClusterEventBus clusterEventBus;
 
     public AuthController(UserRepository userRepository, PasswordEncoder passwordEncoder,
                           RoleRepository roleRepository, ChannelRepository channelRepository,
-                          UserChannelAccessRepository accessRepository
+                          UserChannelAccessRepository accessRepository, ClusterEventBus clusterEventBus
                           ) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.roleRepository = roleRepository;
         this.channelRepository = channelRepository;
         this.accessRepository = accessRepository;
+        this.clusterEventBus = clusterEventBus;
     }
 
     record LoginRequest(String login, String password) {}
@@ -77,6 +81,7 @@ public class AuthController {
         access.setJoinedAt(LocalDateTime.now());
 
         accessRepository.save(access);
+        clusterEventBus.publish(ClusterEvent.membershipChanged(defaultChannel.getId(), savedUser.getId()));
 
         return ResponseEntity.ok("User registered and joined default channel!");
     }
@@ -106,7 +111,7 @@ public class AuthController {
     @GetMapping("/profile")
     public ResponseEntity<?> getProfile(@RequestParam String login) {
 
-        Optional<User> userOpt = userRepository.findByLogin(login);
+        Optional<User> userOpt = userRepository.findWithRolesByLogin(login);
 
         if (userOpt.isPresent()) {
             User user = userOpt.get();
@@ -1,14 +1,24 @@
 package com.candle.larktalk.controller;
 
+import com.candle.larktalk.cluster.ClusterEvent;
+import com.candle.larktalk.cluster.ClusterEventBus;
+import com.candle.larktalk.model.Channel;
 import com.candle.larktalk.model.ChannelSetting;
 import com.candle.larktalk.model.User;
-import com.candle.larktalk.model.UserChannelAccess;
+import com.candle.larktalk.ratelimit.RateLimiter;
+import com.candle.larktalk.repository.ChannelMemberCount;
+import com.candle.larktalk.repository.ChannelRepository;
 import com.candle.larktalk.repository.ChannelSettingRepository;
+import com.candle.larktalk.repository.ChannelSettingView;
+import com.candle.larktalk.repository.ChannelView;
 import com.candle.larktalk.repository.UserChannelAccessRepository;
 import com.candle.larktalk.repository.UserRepository;
 import lombok.AllArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -17,6 +27,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api")
@@ -25,10 +37,19 @@ public class ChannelController {
     private final UserRepository userRepository;
     private final UserChannelAccessRepository accessRepository;
     private final ChannelSettingRepository channelSettingRepository;
+    private final ChannelRepository channelRepository;
+    private final ClusterEventBus clusterEventBus;
+
+    // Parsed as integers by getMyChannels and RateLimiter, so only non-negative integers are stored
+    private static final Set<String> NUMERIC_SETTINGS =
+            Set.of("max_occupancy", RateLimiter.PER_MINUTE_SETTING, RateLimiter.BURST_SETTING);
 
     record ChannelDto(Long id, String name, String description) {
     }
 
+    record SettingRequest(String key, String value) {
+    }
+
     @GetMapping("/channels/my")
     public ResponseEntity<?> getMyChannels(@RequestHeader(value = "Authorization", required = false) String authHeader) {
         if (authHeader == null || !authHeader.startsWith("Bearer fake-jwt-token-for-")) {
@@ -37,34 +58,44 @@ public class ChannelController {
 
         String login = authHeader.replace("Bearer fake-jwt-token-for-", "");
 
-        Optional<User> userOpt = userRepository.findByLogin(login);
-        if (userOpt.isEmpty()) {
+        Optional<Long> userIdOpt = userRepository.findIdByLogin(login);
+        if (userIdOpt.isEmpty()) {
             return ResponseEntity.status(401).body(Map.of("success", false, "message", "User not found"));
         }
-        User user = userOpt.get();
 
-        List<UserChannelAccess> userAccess = accessRepository.findByUserId(user.getId());
+        // Three queries in total regardless of the number of channels: channels, their settings, member counts
+        List<ChannelView> userChannels = accessRepository.findChannelsByUserId(userIdOpt.get());
+        if (userChannels.isEmpty()) {
+            return ResponseEntity.ok(List.of());
+        }
+        List<Long> channelIds = userChannels.stream().map(ChannelView::id).toList();
+
+        Map<Long, List<ChannelSettingView>> settingsByChannel = channelSettingRepository.findViewsByChannelIdIn(channelIds)
+                .stream()
+                .collect(Collectors.groupingBy(ChannelSettingView::channelId));
+        Map<Long, Long> membersByChannel = accessRepository.countMembersByChannelIds(channelIds).stream()
+                .collect(Collectors.toMap(ChannelMemberCount::channelId, ChannelMemberCount::members));
 
         List<ChannelDto> channels = new ArrayList<>();
 
-        for (UserChannelAccess access : userAccess) {
+        for (ChannelView channel : userChannels) {
             boolean isActive = true;
             int maxOccupancy = 1000;
 
-            for (ChannelSetting setting : channelSettingRepository.findByChannelId(access.getChannel().getId())) {
-                if("active".equals(setting.getSettingKey()) && "False".equals(setting.getSettingValue())) {
+            for (ChannelSettingView setting : settingsByChannel.getOrDefault(channel.id(), List.of())) {
+                if("active".equals(setting.settingKey()) && "False".equals(setting.settingValue())) {
                     isActive = false;
                 }
-                if("max_occupancy".equals(setting.getSettingKey())) {
-                    maxOccupancy = Integer.parseInt(setting.getSettingValue());
+                if("max_occupancy".equals(setting.settingKey())) {
+                    maxOccupancy = Integer.parseInt(setting.settingValue());
                 }
             }
 
-            long currentUsersCount = accessRepository.countByChannelId(access.getChannel().getId());
+            long currentUsersCount = membersByChannel.getOrDefault(channel.id(), 0L);
             if (isActive && currentUsersCount < maxOccupancy) {
-                channels.add(new ChannelDto(access.getChannel().getId(),
-                        access.getChannel().getName(),
-                        access.getChannel().getDescription()
+                channels.add(new ChannelDto(channel.id(),
+                        channel.name(),
+                        channel.description()
                 ));
             }
         }
@@ -72,4 +103,54 @@ public class ChannelController {
 
         return ResponseEntity.ok(channels);
     }
+
+    @PutMapping("/channels/{id}/settings")
+    public ResponseEntity<?> updateSetting(@RequestHeader(value = "Authorization", required = false) String authHeader,
+                                           @PathVariable Long id,
+                                           @RequestBody SettingRequest request) {
+        if (authHeader == null || !authHeader.startsWith("Bearer fake-jwt-token-for-")) {
+            return ResponseEntity.status(401).body(Map.of("success", false, "message", "Unauthorized"));
+        }
+
+        String login = authHeader.replace("Bearer fake-jwt-token-for-", "");
+
+        Optional<User> userOpt = userRepository.findWithRolesByLogin(login);
+        if (userOpt.isEmpty()) {
+            return ResponseEntity.status(401).body(Map.of("success", false, "message", "User not found"));
+        }
+        if (userOpt.get().getRoles().stream().noneMatch(role -> "admin".equals(role.getName()))) {
+            return ResponseEntity.status(403).body(Map.of("success", false, "message", "Admin role required"));
+        }
+        if (request.key() == null || request.key().isBlank() || request.value() == null) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", "key and value are required"));
+        }
+        if (NUMERIC_SETTINGS.contains(request.key()) && !isNonNegativeInt(request.value())) {
+            return ResponseEntity.badRequest().body(Map.of("success", false,
+                    "message", request.key() + " must be a non-negative integer"));
+        }
+
+        Optional<Channel> channelOpt = channelRepository.findById(id);
+        if (channelOpt.isEmpty()) {
+            return ResponseEntity.status(404).body(Map.of("success", false, "message", "Channel not found"));
+        }
+
+        ChannelSetting setting = channelSettingRepository.findByChannelIdAndSettingKey(id, request.key())
+                .orElseGet(ChannelSetting::new);
+        setting.setChannel(channelOpt.get());
+        setting.setSettingKey(request.key());
+        setting.setSettingValue(request.value());
+        ChannelSetting saved = channelSettingRepository.save(setting);
+
+        clusterEventBus.publish(ClusterEvent.settingChanged(id, saved.getId()));
+
+        return ResponseEntity.ok(Map.of("success", true, "settingId", saved.getId()));
+    }
+
+    private static boolean isNonNegativeInt(String value) {
+        try {
+            return Integer.parseInt(value) >= 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
 }
@@ -0,0 +1,30 @@
+package com.candle.larktalk.controller;
+
+import com.candle.larktalk.media.MediaProcessingService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api")
+public class MediaController {
+
+    private final MediaProcessingService mediaProcessingService;
+
+    public MediaController(MediaProcessingService mediaProcessingService) {
+        this.mediaProcessingService = mediaProcessingService;
+    }
+
+    @GetMapping("/media/metrics")
+    public ResponseEntity<?> getMetrics(@RequestHeader(value = "Authorization", required = false) String authHeader) {
+        if (authHeader == null || !authHeader.startsWith("Bearer fake-jwt-token-for-")) {
+            return ResponseEntity.status(401).body(Map.of("success", false, "message", "Unauthorized"));
+        }
+
+        return ResponseEntity.ok(mediaProcessingService.stats());
+    }
+}
@@ -1,36 +1,141 @@
 package com.candle.larktalk.controller;
 
+import com.candle.larktalk.cache.MessageFragmentCache;
+import com.candle.larktalk.cluster.ChannelWatchers;
+import com.candle.larktalk.cluster.ClusterEvent;
+import com.candle.larktalk.cluster.ClusterEventBus;
+import com.candle.larktalk.media.MediaPayload;
+import com.candle.larktalk.media.MediaProcessingService;
+import com.candle.larktalk.media.MediaRejectedException;
 import com.candle.larktalk.model.Channel;
+import com.candle.larktalk.model.MediaStatus;
 import com.candle.larktalk.model.Message;
 import com.candle.larktalk.model.MessageType;
 import com.candle.larktalk.model.User;
+import com.candle.larktalk.ratelimit.RateLimiter;
 import com.candle.larktalk.repository.ChannelRepository;
+import com.candle.larktalk.repository.MessageBatchRepository;
+import com.candle.larktalk.repository.MessageBatchRepository.NewMessage;
+import com.candle.larktalk.repository.MessageContentView;
+import com.candle.larktalk.repository.MessageMediaView;
 import com.candle.larktalk.repository.MessageRepository;
+import com.candle.larktalk.repository.MessageView;
 import com.candle.larktalk.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.databind.json.JsonMapper;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api")
 public class MessageController {
 
+    private static final int HISTORY_CHUNK_SIZE = 1000;
+
     private final MessageRepository messageRepository;
     private final UserRepository userRepository;
     private final ChannelRepository channelRepository;
+    private final MediaProcessingService mediaProcessingService;
+    private final RateLimiter rateLimiter;
+    private final MessageBatchRepository messageBatchRepository;
+    private final ClusterEventBus clusterEventBus;
+    private final ChannelWatchers channelWatchers;
+    private final MessageFragmentCache fragmentCache;
+    private final JsonMapper jsonMapper;
+    private final int batchMaxSize;
 
-    public MessageController(MessageRepository messageRepository, UserRepository userRepository, ChannelRepository channelRepository) {
+    public MessageController(MessageRepository messageRepository, UserRepository userRepository, ChannelRepository channelRepository,
+                             MediaProcessingService mediaProcessingService, RateLimiter rateLimiter,
+                             MessageBatchRepository messageBatchRepository, ClusterEventBus clusterEventBus,
+                             ChannelWatchers channelWatchers, MessageFragmentCache fragmentCache, JsonMapper jsonMapper,
+                             @Value("${larktalk.messages.batch-max-size:500}") int batchMaxSize) {
         this.messageRepository = messageRepository;
         this.userRepository = userRepository;
         this.channelRepository = channelRepository;
+        this.mediaProcessingService = mediaProcessingService;
+        this.rateLimiter = rateLimiter;
+        this.messageBatchRepository = messageBatchRepository;
+        this.clusterEventBus = clusterEventBus;
+        this.channelWatchers = channelWatchers;
+        this.fragmentCache = fragmentCache;
+        this.jsonMapper = jsonMapper;
+        this.batchMaxSize = batchMaxSize;
+    }
+
+    // Media messages carry contentUrl instead of the inline data URI
+    record MessageDto(Long id, String content, String contentUrl, String timestamp, String userName, String channelName,
+                      MessageType type, MediaDto media) {}
+    record MediaDto(MediaStatus status, Long size, Integer width, Integer height, Long durationMs, String thumbnail) {}
+    record MessageRequest(Long chatId, String content, MessageType type) {}
+    record BatchMessageRequest(List<MessageRequest> messages) {}
+    record BatchItemResult(int index, Long messageId, String timestamp, MediaStatus mediaStatus, String error) {
+        static BatchItemResult error(int index, String error) {
+            return new BatchItemResult(index, null, null, null, error);
+        }
+    }
+
+    static MediaDto toMediaDto(MessageMediaView v) {
+        return new MediaDto(v.mediaStatus(), v.mediaSize(), v.mediaWidth(), v.mediaHeight(),
+                v.mediaDurationMs(), v.thumbnail());
+    }
+
+    static MessageDto toDto(MessageView v) {
+        MediaDto media = v.mediaStatus() == null ? null : new MediaDto(v.mediaStatus(), v.mediaSize(),
+                v.mediaWidth(), v.mediaHeight(), v.mediaDurationMs(), v.thumbnail());
+        return new MessageDto(
+                v.id(),
+                v.content(),
+                media == null ? null : contentUrl(v.id()),
+                v.timestamp().toString(),
+                v.senderLogin(),
+                v.channelName(),
+                v.type(),
+                media);
+    }
+
+    // A freshly stored message, media metadata is not known yet
+    static MessageDto toDto(Long id, String content, LocalDateTime timestamp, String login, String channelName,
+                            MessageType type, MediaStatus mediaStatus) {
+        if (mediaStatus == null) {
+            return new MessageDto(id, content, null, timestamp.toString(), login, channelName, type, null);
+        }
+        return new MessageDto(id, null, contentUrl(id), timestamp.toString(), login, channelName, type,
+                new MediaDto(mediaStatus, null, null, null, null, null));
     }
 
-    record MessageDto(String content, String timestamp, String userName, String channelName) {}
-    record MessageRequest(Long chatId, String content) {}
+    static String contentUrl(Long id) {
+        return "/api/messages/" + id + "/content";
+    }
+
+    /**
+     * Encodes the message once and caches the bytes. PENDING media is not cached since
+     * the pipeline is about to change it.
+     */
+    private byte[] toFragment(MessageDto dto) {
+        byte[] json = jsonMapper.writeValueAsBytes(dto);
+        if (dto.media() == null || dto.media().status() != MediaStatus.PENDING) {
+            fragmentCache.put(dto.id(), json);
+        }
+        return json;
+    }
 
 
     @GetMapping("/messages")
@@ -45,17 +150,50 @@ public class MessageController {
         String login = authHeader.replace("Bearer fake-jwt-token-for-", "");
         System.out.println("User " + login + " pobiera historię czatu nr " + chatId);
 
-        List<Message> messages = messageRepository.findByChannelIdOrderByTimestampAsc(chatId);
+        // Only ids come from the DB for cached messages, the rest is loaded and encoded once
+        List<Long> ids = messageRepository.findIdsByChannelIdOrderByTimestampAsc(chatId);
+        byte[][] fragments = new byte[ids.size()][];
+        List<Long> misses = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            fragments[i] = fragmentCache.get(ids.get(i));
+            if (fragments[i] == null) {
+                misses.add(ids.get(i));
+            }
+        }
 
-        List<MessageDto> response = messages.stream()
-                .map(m -> new MessageDto(
-                        m.getContent(),
-                        m.getTimestamp().toString(),
-                        m.getSender().getLogin(),
-                        m.getChannel().getName()
-                )).toList();
+        if (!misses.isEmpty()) {
+            // Chunked so a cold cache on a large channel stays under the bind parameter limit
+            Map<Long, byte[]> loaded = new HashMap<>();
+            for (int from = 0; from < misses.size(); from += HISTORY_CHUNK_SIZE) {
+                List<Long> chunk = misses.subList(from, Math.min(misses.size(), from + HISTORY_CHUNK_SIZE));
+                for (MessageView v : messageRepository.findViewsByIdIn(chunk)) {
+                    loaded.put(v.id(), toFragment(toDto(v)));
+                }
+            }
+            for (int i = 0; i < ids.size(); i++) {
+                if (fragments[i] == null) {
+                    fragments[i] = loaded.get(ids.get(i));
+                }
+            }
+        }
 
-        return ResponseEntity.ok(response);
+        StreamingResponseBody body = out -> {
+            out.write('[');
+            boolean first = true;
+            for (byte[] fragment : fragments) {
+                if (fragment == null) {
+                    continue; // deleted between the two queries
+                }
+                if (!first) {
+                    out.write(',');
+                }
+                out.write(fragment);
+                first = false;
+            }
+            out.write(']');
+        };
+
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
     }
 
     @PostMapping("/messages")
@@ -68,12 +206,20 @@ public class MessageController {
 
         String login = authHeader.replace("Bearer fake-jwt-token-for-", "");
 
-        Optional<User> userOpt = userRepository.findByLogin(login);
-        if (userOpt.isEmpty()) {
+        // Known users are limited before any DB access, unseen logins share the limiter's lookup bucket
+        long userWait = rateLimiter.tryAcquireUser(login, 1);
+        if (userWait > 0) {
+            return tooManyRequests(userWait);
+        }
+
+        Optional<Long> senderIdOpt = userRepository.findIdByLogin(login);
+        if (senderIdOpt.isEmpty()) {
             return ResponseEntity.status(401).body(Map.of("success", false, "message", "User not found"));
         }
+        rateLimiter.registerUser(login);
 
-        User sender = userOpt.get();
+        // Only the FK is needed, so the sender is an uninitialized reference rather than a loaded User
+        User sender = userRepository.getReferenceById(senderIdOpt.get());
         Optional<Channel> channelOpt = channelRepository.findById(request.chatId());
 
         if (channelOpt.isEmpty()) {
@@ -81,20 +227,259 @@ public class MessageController {
         }
 
         Channel channel = channelOpt.get();
+        MessageType type = request.type() != null ? request.type() : MessageType.TEXT;
+        boolean isMedia = MediaProcessingService.isMedia(type);
+
+        // Rejected before taking a channel permit, so bad uploads don't use up the channel's quota
+        if (isMedia) {
+            if (!mediaProcessingService.isWithinSizeLimit(request.content())) {
+                return ResponseEntity.status(413).body(Map.of("success", false, "message", "Media too large"));
+            }
+            try {
+                MediaPayload.checkDeclaredType(request.content(), type);
+            } catch (MediaRejectedException e) {
+                return ResponseEntity.status(400).body(Map.of("success", false, "message", e.getMessage()));
+            }
+        }
+
+        long channelWait = rateLimiter.tryAcquireChannel(request.chatId(), 1);
+        if (channelWait > 0) {
+            return tooManyRequests(channelWait);
+        }
 
         Message message = new Message();
         message.setContent(request.content());
         message.setSender(sender);
         message.setChannel(channel);
-        message.setType(MessageType.TEXT);
+        message.setType(type);
         message.setTimestamp(LocalDateTime.now());
+        if (isMedia) {
+            message.setMediaStatus(MediaStatus.PENDING);
+        }
 
         Message savedMessage = messageRepository.save(message);
+        toFragment(toDto(savedMessage.getId(), savedMessage.getContent(), savedMessage.getTimestamp(), login,
+                channel.getName(), type, savedMessage.getMediaStatus()));
+        clusterEventBus.publish(ClusterEvent.messageCreated(channel.getId(), savedMessage.getId()));
+
+        MediaStatus mediaStatus = savedMessage.getMediaStatus();
+        if (isMedia && !mediaProcessingService.submit(savedMessage.getId())) {
+            mediaStatus = MediaStatus.DEGRADED;
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("messageId", savedMessage.getId());
+        response.put("timestamp", savedMessage.getTimestamp().toString());
+        if (mediaStatus != null) {
+            response.put("mediaStatus", mediaStatus);
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Bulk variant of {@link #saveMessage} for bots and bridges. The sender and every distinct
+     * channel are resolved once and all valid items are inserted in a single JDBC batch.
+     * Invalid items don't fail the request, they get an error in their result slot.
+     */
+    @PostMapping("/messages/batch")
+    public ResponseEntity<?> saveMessages(
+            @RequestHeader(value = "Authorization", required = false) String authHeader,
+            @RequestBody BatchMessageRequest request) {
+        if (authHeader == null || !authHeader.startsWith("Bearer fake-jwt-token-for-")) {
+            return ResponseEntity.status(401).body(Map.of("success", false, "message", "Unauthorized"));
+        }
+        if (request.messages() == null || request.messages().isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", "No messages"));
+        }
+        if (request.messages().size() > batchMaxSize) {
+            return ResponseEntity.status(413).body(Map.of("success", false,
+                    "message", "Batch exceeds " + batchMaxSize + " messages"));
+        }
+
+        String login = authHeader.replace("Bearer fake-jwt-token-for-", "");
+        List<MessageRequest> items = request.messages();
+
+        // One permit per request from the batch bucket, per-item cost is carried by the channel limits
+        long batchWait = rateLimiter.tryAcquireBatch(login);
+        if (batchWait > 0) {
+            return tooManyRequests(batchWait);
+        }
+
+        Optional<Long> senderIdOpt = userRepository.findIdByLogin(login);
+        if (senderIdOpt.isEmpty()) {
+            return ResponseEntity.status(401).body(Map.of("success", false, "message", "User not found"));
+        }
+        rateLimiter.registerUser(login);
+        Long senderId = senderIdOpt.get();
+
+        Set<Long> chatIds = new HashSet<>();
+        for (MessageRequest item : items) {
+            if (item != null && item.chatId() != null) {
+                chatIds.add(item.chatId());
+            }
+        }
+        Map<Long, Channel> channels = channelRepository.findAllById(chatIds).stream()
+                .collect(Collectors.toMap(Channel::getId, Function.identity()));
+
+        BatchItemResult[] results = new BatchItemResult[items.size()];
+        Map<Long, List<Integer>> validByChannel = new LinkedHashMap<>();
+
+        for (int i = 0; i < items.size(); i++) {
+            MessageRequest item = items.get(i);
+            if (item == null || item.chatId() == null) {
+                results[i] = BatchItemResult.error(i, "chatId is required");
+                continue;
+            }
+            if (item.content() == null || item.content().isBlank()) {
+                results[i] = BatchItemResult.error(i, "content is required");
+                continue;
+            }
+            if (!channels.containsKey(item.chatId())) {
+                results[i] = BatchItemResult.error(i, "Channel not found");
+                continue;
+            }
+            MessageType type = item.type() != null ? item.type() : MessageType.TEXT;
+            if (MediaProcessingService.isMedia(type)) {
+                if (!mediaProcessingService.isWithinSizeLimit(item.content())) {
+                    results[i] = BatchItemResult.error(i, "Media too large");
+                    continue;
+                }
+                try {
+                    MediaPayload.checkDeclaredType(item.content(), type);
+                } catch (MediaRejectedException e) {
+                    results[i] = BatchItemResult.error(i, e.getMessage());
+                    continue;
+                }
+            }
+            validByChannel.computeIfAbsent(item.chatId(), id -> new ArrayList<>()).add(i);
+        }
+
+        // Channel permits are only taken for valid items; whatever the channel can't absorb right now is rejected
+        List<Integer> accepted = new ArrayList<>();
+        validByChannel.forEach((chatId, indexes) -> {
+            int granted = rateLimiter.tryAcquireChannelUpTo(chatId, indexes.size());
+            accepted.addAll(indexes.subList(0, granted));
+            for (int index : indexes.subList(granted, indexes.size())) {
+                results[index] = BatchItemResult.error(index, "Channel rate limit exceeded");
+            }
+        });
+        accepted.sort(null);
+
+        List<NewMessage> rows = new ArrayList<>();
+        List<Integer> rowIndexes = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (int i : accepted) {
+            MessageRequest item = items.get(i);
+            MessageType type = item.type() != null ? item.type() : MessageType.TEXT;
+            boolean isMedia = MediaProcessingService.isMedia(type);
+            rows.add(new NewMessage(senderId, item.chatId(), item.content(), type,
+                    isMedia ? MediaStatus.PENDING : null, now));
+            rowIndexes.add(i);
+        }
+
+        List<Long> ids = rows.isEmpty() ? List.of() : messageBatchRepository.insertAll(rows);
+
+        for (int r = 0; r < rows.size(); r++) {
+            NewMessage row = rows.get(r);
+            Long id = ids.get(r);
+            toFragment(toDto(id, row.content(), row.timestamp(), login, channels.get(row.channelId()).getName(),
+                    row.type(), row.mediaStatus()));
+            clusterEventBus.publish(ClusterEvent.messageCreated(row.channelId(), id));
+            MediaStatus mediaStatus = row.mediaStatus();
+            if (mediaStatus != null && !mediaProcessingService.submit(id)) {
+                mediaStatus = MediaStatus.DEGRADED;
+            }
+            int index = rowIndexes.get(r);
+            results[index] = new BatchItemResult(index, id, row.timestamp().toString(), mediaStatus, null);
+        }
 
         return ResponseEntity.ok(Map.of(
                 "success", true,
-                "messageId", savedMessage.getId(),
-                "timestamp", savedMessage.getTimestamp().toString()
+                "saved", rows.size(),
+                "results", List.of(results)
         ));
     }
+
+    /**
+     * Long poll for new messages in a channel, see {@link ChannelWatchers}.
+     */
+    @GetMapping("/messages/updates")
+    public DeferredResult<ResponseEntity<?>> awaitMessages(
+            @RequestHeader(value = "Authorization", required = false) String authHeader,
+            @RequestParam Long chatId,
+            @RequestParam(defaultValue = "0") long afterId) {
+        if (authHeader == null || !authHeader.startsWith("Bearer fake-jwt-token-for-")) {
+            DeferredResult<ResponseEntity<?>> unauthorized = new DeferredResult<>();
+            unauthorized.setResult(ResponseEntity.status(401).body(Map.of("success", false, "message", "Unauthorized")));
+            return unauthorized;
+        }
+        if (!channelRepository.existsById(chatId)) {
+            DeferredResult<ResponseEntity<?>> notFound = new DeferredResult<>();
+            notFound.setResult(ResponseEntity.status(404).body(Map.of("success", false, "message", "Channel not found")));
+            return notFound;
+        }
+
+        return channelWatchers.await(chatId, afterId);
+    }
+
+    @GetMapping("/messages/{id}/media")
+    public ResponseEntity<?> getMediaStatus(
+            @RequestHeader(value = "Authorization", required = false) String authHeader,
+            @PathVariable Long id) {
+        if (authHeader == null || !authHeader.startsWith("Bearer fake-jwt-token-for-")) {
+            return ResponseEntity.status(401).body(Map.of("success", false, "message", "Unauthorized"));
+        }
+
+        Optional<MessageMediaView> mediaOpt = messageRepository.findMediaById(id);
+        if (mediaOpt.isEmpty()) {
+            return ResponseEntity.status(404).body(Map.of("success", false, "message", "Media message not found"));
+        }
+
+        return ResponseEntity.ok(toMediaDto(mediaOpt.get()));
+    }
+
+    /**
+     * Raw body of a media message, decoded from the stored data URI.
+     */
+    @GetMapping("/messages/{id}/content")
+    public ResponseEntity<?> getMediaContent(
+            @RequestHeader(value = "Authorization", required = false) String authHeader,
+            @PathVariable Long id) {
+        if (authHeader == null || !authHeader.startsWith("Bearer fake-jwt-token-for-")) {
+            return ResponseEntity.status(401).body(Map.of("success", false, "message", "Unauthorized"));
+        }
+
+        Optional<MessageContentView> contentOpt = messageRepository.findMediaContentById(id);
+        if (contentOpt.isEmpty()) {
+            return ResponseEntity.status(404).body(Map.of("success", false, "message", "Media message not found"));
+        }
+
+        try {
+            MessageContentView content = contentOpt.get();
+            MediaPayload payload = MediaPayload.parse(content.content());
+            // The declared type is client-controlled, anything outside the message's media family
+            // (or SVG) is served as a download so it can't render as a page on our origin
+            if (!MediaPayload.isSafeInline(payload.mimeType(), content.type())) {
+                return ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                                .filename("message-" + id).build().toString())
+                        .contentLength(payload.bytes().length)
+                        .body(payload.bytes());
+            }
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(payload.mimeType()))
+                    .contentLength(payload.bytes().length)
+                    .body(payload.bytes());
+        } catch (MediaRejectedException | InvalidMediaTypeException e) {
+            return ResponseEntity.status(422).body(Map.of("success", false, "message", "Stored media is not readable"));
+        }
+    }
+
+    private ResponseEntity<?> tooManyRequests(long waitNanos) {
+        return ResponseEntity.status(429)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(RateLimiter.retryAfterSeconds(waitNanos)))
+                .body(Map.of("success", false, "message", "Too many messages, slow down"));
+    }
 }
\ No newline at end of file
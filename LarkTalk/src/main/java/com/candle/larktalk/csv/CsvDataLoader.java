@@ -8,7 +8,7 @@ import com.opencsv.CSVReaderBuilder;
 import com.opencsv.exceptions.CsvException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Component;
@@ -22,8 +22,14 @@ import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.function.Function;
 
+/**
+ * Seeds an empty database from the CSV files in resources/data.
+ * Opt-in: only created and run, by {@link CsvSeedRunner}, when the app is started
+ * with {@code --larktalk.seed=true}.
+ */
 @Component
-public class CsvDataLoader implements CommandLineRunner {
+@Lazy
+public class CsvDataLoader {
 
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
@@ -45,9 +51,8 @@ public class CsvDataLoader implements CommandLineRunner {
         this.messageRepository = messageRepository;
     }
 
-    @Override
     @Transactional
-    public void run(String... args) throws Exception {
+    public void load() {
         if (userRepository.count() > 0) return;
 
         // Dummy maps (CSV ID -> DB Entities) - to solve PostgreSQL ID Mapping
@@ -0,0 +1,39 @@
+package com.candle.larktalk.csv;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs {@link CsvDataLoader} when {@code larktalk.seed=true}. Runners finish before
+ * ApplicationReadyEvent, so a seeded instance is never reported ready with an empty DB.
+ * The flag is checked here at runtime rather than with a condition, so the AOT-processed
+ * context is the same whether seeding is on or off.
+ */
+@Component
+class CsvSeedRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(CsvSeedRunner.class);
+
+    private final ObjectProvider<CsvDataLoader> loader;
+    private final boolean seed;
+
+    CsvSeedRunner(ObjectProvider<CsvDataLoader> loader, @Value("${larktalk.seed:false}") boolean seed) {
+        this.loader = loader;
+        this.seed = seed;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!seed) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        loader.getObject().load();
+        log.info("Seeding took {} ms", System.currentTimeMillis() - start);
+    }
+}
@@ -0,0 +1,36 @@
+package com.candle.larktalk.db;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.flyway.autoconfigure.FlywayConfigurationCustomizer;
+import org.springframework.boot.flyway.autoconfigure.FlywayMigrationStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class FlywayConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(FlywayConfig.class);
+
+    // Databases created by ddl-auto=update have no history table yet - adopt them as version 1
+    @Bean
+    public FlywayConfigurationCustomizer baselineExistingSchema() {
+        return configuration -> configuration
+                .baselineOnMigrate(true)
+                .baselineVersion("1");
+    }
+
+    // Checked at runtime rather than with spring.flyway.enabled, whose condition AOT fixes at build time.
+    // Used by the CDS training run so a package build never migrates the configured database.
+    @Bean
+    public FlywayMigrationStrategy migrationStrategy(@Value("${larktalk.flyway.skip:false}") boolean skip) {
+        return flyway -> {
+            if (skip) {
+                log.info("Skipping Flyway migrations (larktalk.flyway.skip=true)");
+                return;
+            }
+            flyway.migrate();
+        };
+    }
+}
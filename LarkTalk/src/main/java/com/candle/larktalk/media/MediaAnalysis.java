@@ -0,0 +1,6 @@
+package com.candle.larktalk.media;
+
+import com.candle.larktalk.model.MediaStatus;
+
+record MediaAnalysis(MediaStatus status, long size, Integer width, Integer height, Long durationMs, String thumbnail) {
+}
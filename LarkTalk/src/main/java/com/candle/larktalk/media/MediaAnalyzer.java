@@ -0,0 +1,116 @@
+package com.candle.larktalk.media;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Iterator;
+
+/**
+ * Stateless helpers used by the media workers. Only codecs shipped with the
+ * JDK are supported: ImageIO for images and javax.sound for audio.
+ * <p>
+ * Everything here works on in-memory bytes, so an {@link IOException} means the payload is
+ * malformed and is reported as a {@link MediaRejectedException}.
+ */
+@Component
+class MediaAnalyzer {
+
+    private final int thumbnailEdge;
+    private final int thumbnailMaxBytes;
+    private final long maxImagePixels;
+
+    MediaAnalyzer(@Value("${larktalk.media.thumbnail-edge:256}") int thumbnailEdge,
+                  @Value("${larktalk.media.thumbnail-max-bytes:65536}") int thumbnailMaxBytes,
+                  @Value("${larktalk.media.max-image-pixels:25000000}") long maxImagePixels) {
+        this.thumbnailEdge = thumbnailEdge;
+        this.thumbnailMaxBytes = thumbnailMaxBytes;
+        this.maxImagePixels = maxImagePixels;
+    }
+
+    /**
+     * Decodes the image after checking the dimensions declared in its header, so a small file
+     * claiming a huge canvas is rejected before any pixel buffer is allocated.
+     */
+    BufferedImage readImage(MediaPayload payload) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(payload.bytes()))) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                throw new MediaRejectedException("Unsupported image format: " + payload.mimeType());
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                long width = reader.getWidth(0);
+                long height = reader.getHeight(0);
+                if (width * height > maxImagePixels) {
+                    throw new MediaRejectedException("Image too large: " + width + "x" + height);
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            throw new MediaRejectedException("Unreadable image: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Scales the image to fit {@code thumbnailEdge} and encodes it as a JPEG data URI.
+     * Returns null when the encoded preview would exceed {@code thumbnailMaxBytes}.
+     */
+    String thumbnail(BufferedImage image) {
+        double scale = Math.min(1.0, (double) thumbnailEdge / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(scaled, "jpg", out);
+        } catch (IOException e) {
+            throw new MediaRejectedException("Could not encode thumbnail: " + e.getMessage(), e);
+        }
+        if (out.size() > thumbnailMaxBytes) {
+            return null;
+        }
+        return "data:image/jpeg;base64," + Base64.getEncoder().encodeToString(out.toByteArray());
+    }
+
+    /**
+     * Returns the clip duration, or null when javax.sound cannot parse the format (e.g. mp3/ogg).
+     */
+    Long audioDurationMs(MediaPayload payload) {
+        try {
+            AudioFileFormat format = AudioSystem.getAudioFileFormat(new ByteArrayInputStream(payload.bytes()));
+            if (format.getFrameLength() == AudioSystem.NOT_SPECIFIED || format.getFormat().getFrameRate() <= 0) {
+                return null;
+            }
+            return (long) (format.getFrameLength() * 1000.0 / format.getFormat().getFrameRate());
+        } catch (UnsupportedAudioFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new MediaRejectedException("Unreadable audio: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.candle.larktalk.media;
+
+import com.candle.larktalk.model.MessageType;
+
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * Decoded form of a media message body. Clients send media inline as a
+ * {@code data:<mime>;base64,<payload>} URI in {@code Message.content}.
+ */
+public record MediaPayload(String mimeType, byte[] bytes) {
+
+    public static MediaPayload parse(String content) {
+        String mimeType = mimeTypeOf(content);
+        try {
+            return new MediaPayload(mimeType, Base64.getDecoder().decode(content.substring(content.indexOf(',') + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new MediaRejectedException("Media content is not valid base64");
+        }
+    }
+
+    /**
+     * Reads the MIME type from the data URI header without decoding the payload.
+     */
+    public static String mimeTypeOf(String content) {
+        if (content == null || !content.startsWith("data:")) {
+            throw new MediaRejectedException("Media content must be a base64 data URI");
+        }
+        int comma = content.indexOf(',');
+        if (comma < 0 || !content.substring(0, comma).endsWith(";base64")) {
+            throw new MediaRejectedException("Media content must be a base64 data URI");
+        }
+        return content.substring("data:".length(), comma - ";base64".length());
+    }
+
+    /**
+     * Checks on the request thread that the declared MIME type is one of the message type's
+     * family (image/, video/ or audio/). The payload itself is only decoded by the workers.
+     */
+    public static void checkDeclaredType(String content, MessageType type) {
+        String mimeType = mimeTypeOf(content);
+        if (!matchesType(mimeType, type)) {
+            throw new MediaRejectedException("Media type '" + mimeType + "' does not match message type " + type);
+        }
+    }
+
+    /**
+     * Whether {@code mimeType} may be served inline for a message of {@code type}. SVG is
+     * excluded as it can carry script.
+     */
+    public static boolean isSafeInline(String mimeType, MessageType type) {
+        return matchesType(mimeType, type) && !mimeType.toLowerCase(Locale.ROOT).startsWith("image/svg");
+    }
+
+    private static boolean matchesType(String mimeType, MessageType type) {
+        String prefix = switch (type) {
+            case IMAGE -> "image/";
+            case VIDEO -> "video/";
+            case AUDIO -> "audio/";
+            default -> null;
+        };
+        return prefix != null && mimeType.length() > prefix.length()
+                && mimeType.toLowerCase(Locale.ROOT).startsWith(prefix);
+    }
+}
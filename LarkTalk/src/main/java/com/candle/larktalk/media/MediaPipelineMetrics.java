@@ -0,0 +1,68 @@
+package com.candle.larktalk.media;
+
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-stage timings and outcome counters of the media pipeline.
+ * Updated from worker threads, read by {@code MediaController}.
+ */
+@Component
+public class MediaPipelineMetrics {
+
+    private final Map<String, StageTimer> stages = new ConcurrentHashMap<>();
+
+    final LongAdder submitted = new LongAdder();
+    final LongAdder rejected = new LongAdder();
+    final LongAdder retried = new LongAdder();
+    final LongAdder completed = new LongAdder();
+    final LongAdder degraded = new LongAdder();
+    final LongAdder failed = new LongAdder();
+
+    void record(String stage, long nanos) {
+        stages.computeIfAbsent(stage, s -> new StageTimer()).record(nanos);
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stageStats = new LinkedHashMap<>();
+        stages.forEach((name, timer) -> stageStats.put(name, timer.snapshot()));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("submitted", submitted.sum());
+        result.put("rejected", rejected.sum());
+        result.put("retried", retried.sum());
+        result.put("completed", completed.sum());
+        result.put("degraded", degraded.sum());
+        result.put("failed", failed.sum());
+        result.put("stages", stageStats);
+        return result;
+    }
+
+    private static final class StageTimer {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        Map<String, Object> snapshot() {
+            long n = count.sum();
+            long total = totalNanos.sum();
+            return Map.of(
+                    "count", n,
+                    "avgMs", n == 0 ? 0.0 : TimeUnit.NANOSECONDS.toMicros(total / n) / 1000.0,
+                    "maxMs", TimeUnit.NANOSECONDS.toMicros(maxNanos.get()) / 1000.0
+            );
+        }
+    }
+}
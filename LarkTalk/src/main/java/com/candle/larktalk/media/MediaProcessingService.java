@@ -0,0 +1,286 @@
+package com.candle.larktalk.media;
+
+import com.candle.larktalk.cluster.ClusterEvent;
+import com.candle.larktalk.cluster.ClusterEventBus;
+import com.candle.larktalk.model.MediaStatus;
+import com.candle.larktalk.model.Message;
+import com.candle.larktalk.model.MessageType;
+import com.candle.larktalk.repository.MessageRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background post-processing of IMAGE/VIDEO/AUDIO messages.
+ * <p>
+ * Jobs only carry the message id, the payload is re-read from the DB by the worker,
+ * so the bounded queue caps memory regardless of media size. When the queue is full
+ * the message is marked {@link MediaStatus#DEGRADED} instead of waiting.
+ * <p>
+ * Messages still queued or waiting for a retry at shutdown are marked DEGRADED, and rows
+ * left PENDING by a node that died are picked up again on startup.
+ * <p>
+ * Only database failures are retried; a payload that fails to decode once will fail again,
+ * so anything else marks the message {@link MediaStatus#FAILED} right away.
+ */
+@Service
+public class MediaProcessingService {
+
+    private static final Logger log = LoggerFactory.getLogger(MediaProcessingService.class);
+
+    private final MessageRepository messageRepository;
+    private final MediaAnalyzer analyzer;
+    private final MediaPipelineMetrics metrics;
+    private final ClusterEventBus clusterEventBus;
+
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService retryScheduler;
+    private final int queueCapacity;
+    private final int maxAttempts;
+    private final long retryBackoffMs;
+    private final int maxContentLength;
+    private final long recoveryAgeSeconds;
+
+    // Ids with a job queued, running or waiting for a retry
+    private final Set<Long> outstanding = ConcurrentHashMap.newKeySet();
+
+    public MediaProcessingService(MessageRepository messageRepository, MediaAnalyzer analyzer, MediaPipelineMetrics metrics,
+                                  ClusterEventBus clusterEventBus,
+                                  @Value("${larktalk.media.workers:2}") int workerCount,
+                                  @Value("${larktalk.media.queue-capacity:100}") int queueCapacity,
+                                  @Value("${larktalk.media.max-attempts:3}") int maxAttempts,
+                                  @Value("${larktalk.media.retry-backoff-ms:500}") long retryBackoffMs,
+                                  @Value("${larktalk.media.max-content-length:14000000}") int maxContentLength,
+                                  @Value("${larktalk.media.recovery-age-seconds:60}") long recoveryAgeSeconds) {
+        this.messageRepository = messageRepository;
+        this.analyzer = analyzer;
+        this.metrics = metrics;
+        this.clusterEventBus = clusterEventBus;
+        this.queueCapacity = queueCapacity;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoffMs = retryBackoffMs;
+        this.maxContentLength = maxContentLength;
+        this.recoveryAgeSeconds = recoveryAgeSeconds;
+
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("media-worker-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("media-retry-"));
+    }
+
+    public static boolean isMedia(MessageType type) {
+        return type == MessageType.IMAGE || type == MessageType.VIDEO || type == MessageType.AUDIO;
+    }
+
+    // Cheap request-thread guard, base64 inflates the payload by ~4/3
+    public boolean isWithinSizeLimit(String content) {
+        return content == null || content.length() <= maxContentLength;
+    }
+
+    /**
+     * Enqueues an already persisted media message. Returns false (and marks the message DEGRADED)
+     * when the pipeline is saturated.
+     */
+    public boolean submit(Long messageId) {
+        metrics.submitted.increment();
+        outstanding.add(messageId);
+        if (enqueue(new Job(messageId, 1, System.nanoTime()))) {
+            return true;
+        }
+        outstanding.remove(messageId);
+        metrics.rejected.increment();
+        metrics.degraded.increment();
+        messageRepository.updateMediaStatus(messageId, MediaStatus.DEGRADED);
+        clusterEventBus.publish(ClusterEvent.messageUpdated(null, messageId));
+        log.warn("Media queue full ({} jobs), message {} stored without processing", queueCapacity, messageId);
+        return false;
+    }
+
+    /**
+     * Re-submits media left PENDING by a node that stopped without draining its queue.
+     * Only rows older than {@code recovery-age-seconds} are taken, so jobs another live node
+     * has just queued are left alone; anything that doesn't fit the queue is marked DEGRADED.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    void recoverPending() {
+        List<Long> ids = messageRepository.findPendingMediaIdsBefore(LocalDateTime.now().minusSeconds(recoveryAgeSeconds));
+        if (ids.isEmpty()) {
+            return;
+        }
+        int degraded = 0;
+        for (Long id : ids) {
+            if (!submit(id)) {
+                degraded++;
+            }
+        }
+        log.info("Recovered {} pending media message(s), {} marked DEGRADED", ids.size(), degraded);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>(metrics.snapshot());
+        result.put("queueDepth", workers.getQueue().size());
+        result.put("queueCapacity", queueCapacity);
+        result.put("activeWorkers", workers.getActiveCount());
+        return result;
+    }
+
+    private boolean enqueue(Job job) {
+        try {
+            workers.execute(() -> process(job));
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private void process(Job job) {
+        metrics.record("queue", System.nanoTime() - job.enqueuedAt());
+        try {
+            Optional<Message> messageOpt = messageRepository.findById(job.messageId());
+            if (messageOpt.isEmpty()) {
+                outstanding.remove(job.messageId());
+                return;
+            }
+            Message message = messageOpt.get();
+            MediaAnalysis analysis = analyze(message.getType(), message.getContent());
+
+            long start = System.nanoTime();
+            messageRepository.updateMedia(job.messageId(), analysis.status(), analysis.size(), analysis.width(),
+                    analysis.height(), analysis.durationMs(), analysis.thumbnail());
+            metrics.record("persist", System.nanoTime() - start);
+            outstanding.remove(job.messageId());
+            clusterEventBus.publish(ClusterEvent.messageUpdated(message.getChannel().getId(), job.messageId()));
+
+            if (analysis.status() == MediaStatus.DEGRADED) {
+                metrics.degraded.increment();
+            } else {
+                metrics.completed.increment();
+            }
+        } catch (MediaRejectedException e) {
+            fail(job, e.getMessage());
+        } catch (DataAccessException e) {
+            retryOrFail(job, e);
+        } catch (Throwable t) {
+            // Decoder bugs or e.g. OutOfMemoryError, never leave the message PENDING
+            log.error("Unexpected error processing media message {}", job.messageId(), t);
+            fail(job, t.toString());
+        }
+    }
+
+    private MediaAnalysis analyze(MessageType type, String content) {
+        long start = System.nanoTime();
+        MediaPayload payload = MediaPayload.parse(content);
+        metrics.record("decode", System.nanoTime() - start);
+        long size = payload.bytes().length;
+
+        switch (type) {
+            case IMAGE -> {
+                start = System.nanoTime();
+                BufferedImage image = analyzer.readImage(payload);
+                metrics.record("analyze", System.nanoTime() - start);
+
+                start = System.nanoTime();
+                String thumbnail = analyzer.thumbnail(image);
+                metrics.record("thumbnail", System.nanoTime() - start);
+
+                return new MediaAnalysis(MediaStatus.READY, size, image.getWidth(), image.getHeight(), null, thumbnail);
+            }
+            case AUDIO -> {
+                start = System.nanoTime();
+                Long durationMs = analyzer.audioDurationMs(payload);
+                metrics.record("analyze", System.nanoTime() - start);
+
+                MediaStatus status = durationMs != null ? MediaStatus.READY : MediaStatus.DEGRADED;
+                return new MediaAnalysis(status, size, null, null, durationMs, null);
+            }
+            default -> {
+                // No video decoder on the classpath - only the size is known
+                return new MediaAnalysis(MediaStatus.DEGRADED, size, null, null, null, null);
+            }
+        }
+    }
+
+    private void retryOrFail(Job job, DataAccessException e) {
+        if (job.attempt() >= maxAttempts) {
+            fail(job, e.toString());
+            return;
+        }
+        long delay = retryBackoffMs << (job.attempt() - 1);
+        log.warn("Media processing of message {} failed (attempt {}/{}), retrying in {} ms",
+                job.messageId(), job.attempt(), maxAttempts, delay, e);
+        metrics.retried.increment();
+
+        int nextAttempt = job.attempt() + 1;
+        try {
+            retryScheduler.schedule(() -> {
+                Job next = new Job(job.messageId(), nextAttempt, System.nanoTime());
+                if (!enqueue(next)) {
+                    fail(next, "queue full on retry");
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException shuttingDown) {
+            fail(job, "shutting down");
+        }
+    }
+
+    private void fail(Job job, String reason) {
+        outstanding.remove(job.messageId());
+        metrics.failed.increment();
+        log.warn("Media processing of message {} failed: {}", job.messageId(), reason);
+        try {
+            messageRepository.updateMediaStatus(job.messageId(), MediaStatus.FAILED);
+            clusterEventBus.publish(ClusterEvent.messageUpdated(null, job.messageId()));
+        } catch (Exception e) {
+            log.error("Could not mark message {} as FAILED", job.messageId(), e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        retryScheduler.shutdownNow();
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(5, TimeUnit.SECONDS)) {
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        // Dropped retries and queued jobs; the update skips rows a late worker has finished
+        if (!outstanding.isEmpty()) {
+            List<Long> drained = List.copyOf(outstanding);
+            try {
+                int marked = messageRepository.updatePendingMediaStatus(drained, MediaStatus.DEGRADED);
+                log.warn("Shutting down with {} unprocessed media message(s), {} marked DEGRADED", drained.size(), marked);
+            } catch (Exception e) {
+                log.error("Could not mark {} unprocessed media message(s) as DEGRADED", drained.size(), e);
+            }
+        }
+    }
+
+    private record Job(Long messageId, int attempt, long enqueuedAt) {
+    }
+}
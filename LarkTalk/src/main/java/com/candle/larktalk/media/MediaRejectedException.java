@@ -0,0 +1,15 @@
+package com.candle.larktalk.media;
+
+/**
+ * Permanent processing failure (bad input) - never retried.
+ */
+public class MediaRejectedException extends RuntimeException {
+
+    MediaRejectedException(String message) {
+        super(message);
+    }
+
+    MediaRejectedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,8 @@
+package com.candle.larktalk.model;
+
+public enum MediaStatus {
+    PENDING,   // queued for background processing
+    READY,     // metadata and thumbnail generated
+    DEGRADED,  // stored as-is, derived data skipped (overload or unsupported format)
+    FAILED     // invalid payload or retries exhausted
+}
@@ -1,6 +1,8 @@
 package com.candle.larktalk.model;
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
 import java.time.LocalDateTime;
 
@@ -20,11 +22,35 @@ public class Message {
     @Enumerated(EnumType.STRING)
     private MessageType type; // Enum: TEXT, IMAGE, VIDEO
 
-    @ManyToOne
+    // Filled in by the media pipeline for IMAGE/VIDEO/AUDIO, null for TEXT
+    @Enumerated(EnumType.STRING)
+    @Column(name = "media_status")
+    private MediaStatus mediaStatus;
+
+    @Column(name = "media_size")
+    private Long mediaSize;
+
+    @Column(name = "media_width")
+    private Integer mediaWidth;
+
+    @Column(name = "media_height")
+    private Integer mediaHeight;
+
+    @Column(name = "media_duration_ms")
+    private Long mediaDurationMs;
+
+    @Column(columnDefinition = "TEXT")
+    private String thumbnail;
+
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "sender_id")
     private User sender;
 
-    @ManyToOne
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "channel_id")
     private Channel channel;
 }
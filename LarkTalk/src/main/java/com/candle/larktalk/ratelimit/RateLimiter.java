@@ -0,0 +1,202 @@
+package com.candle.larktalk.ratelimit;
+
+import com.candle.larktalk.cluster.ClusterEvent;
+import com.candle.larktalk.model.ChannelSetting;
+import com.candle.larktalk.repository.ChannelSettingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-user and per-channel message posting limits.
+ * <p>
+ * User limits come from {@code larktalk.rate-limit.user.*}. Batch requests are counted per
+ * request against their own {@code larktalk.rate-limit.batch.*} bucket, so a bot or bridge is
+ * not held to the interactive per-message rate; their items still count against the channel
+ * limits. Channel limits default to
+ * {@code larktalk.rate-limit.channel.*} and can be overridden with the channel settings
+ * {@code rate_limit_per_minute} and {@code rate_limit_burst}. A per-minute rate or burst of 0,
+ * in the properties or in the settings, disables that limit. Settings are read once, when the
+ * channel bucket is created; a stored value that isn't a non-negative integer falls back to
+ * the property default.
+ * <p>
+ * The login comes from an unverified header, so per-user buckets are only created through
+ * {@link #registerUser} once the caller's lookup has found the user. Until then requests are
+ * counted against one shared {@code larktalk.rate-limit.lookup.*} bucket, which bounds the
+ * user lookups that made-up or not yet seen logins can cause.
+ */
+@Component
+public class RateLimiter {
+
+    public static final String PER_MINUTE_SETTING = "rate_limit_per_minute";
+    public static final String BURST_SETTING = "rate_limit_burst";
+
+    private static final Logger log = LoggerFactory.getLogger(RateLimiter.class);
+
+    private final ChannelSettingRepository channelSettingRepository;
+
+    private final ConcurrentHashMap<String, TokenBucket> userBuckets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, TokenBucket> batchBuckets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, TokenBucket> channelBuckets = new ConcurrentHashMap<>();
+    private final TokenBucket lookupBucket;
+
+    private final int userPerMinute;
+    private final int userBurst;
+    private final int batchPerMinute;
+    private final int batchBurst;
+    private final int channelPerMinute;
+    private final int channelBurst;
+    private final long idleExpiryNanos;
+
+    public RateLimiter(ChannelSettingRepository channelSettingRepository,
+                       @Value("${larktalk.rate-limit.user.per-minute:30}") int userPerMinute,
+                       @Value("${larktalk.rate-limit.user.burst:10}") int userBurst,
+                       @Value("${larktalk.rate-limit.batch.per-minute:30}") int batchPerMinute,
+                       @Value("${larktalk.rate-limit.batch.burst:5}") int batchBurst,
+                       @Value("${larktalk.rate-limit.channel.per-minute:600}") int channelPerMinute,
+                       @Value("${larktalk.rate-limit.channel.burst:100}") int channelBurst,
+                       @Value("${larktalk.rate-limit.lookup.per-minute:600}") int lookupPerMinute,
+                       @Value("${larktalk.rate-limit.lookup.burst:100}") int lookupBurst,
+                       @Value("${larktalk.rate-limit.idle-expiry-ms:600000}") long idleExpiryMs) {
+        this.channelSettingRepository = channelSettingRepository;
+        this.userPerMinute = userPerMinute;
+        this.userBurst = userBurst;
+        this.batchPerMinute = batchPerMinute;
+        this.batchBurst = batchBurst;
+        this.channelPerMinute = channelPerMinute;
+        this.channelBurst = channelBurst;
+        this.idleExpiryNanos = TimeUnit.MILLISECONDS.toNanos(idleExpiryMs);
+        this.lookupBucket = new TokenBucket(lookupPerMinute, lookupBurst, System.nanoTime());
+    }
+
+    /**
+     * @return 0 when allowed, otherwise nanos to wait before retrying
+     */
+    public long tryAcquireUser(String login, int permits) {
+        long now = System.nanoTime();
+        TokenBucket bucket = userBuckets.get(login);
+        return bucket == null ? acquire(lookupBucket, 1, now) : acquire(bucket, permits, now);
+    }
+
+    /**
+     * One permit per batch request, whatever its size.
+     *
+     * @return 0 when allowed, otherwise nanos to wait before retrying
+     */
+    public long tryAcquireBatch(String login) {
+        long now = System.nanoTime();
+        if (!userBuckets.containsKey(login)) {
+            return acquire(lookupBucket, 1, now);
+        }
+        TokenBucket bucket = batchBuckets.computeIfAbsent(login, l -> new TokenBucket(batchPerMinute, batchBurst, now));
+        return acquire(bucket, 1, now);
+    }
+
+    /**
+     * Call once the login has been found, its later requests are then limited per user without
+     * touching the shared lookup bucket or the database.
+     */
+    public void registerUser(String login) {
+        userBuckets.computeIfAbsent(login, l -> new TokenBucket(userPerMinute, userBurst, System.nanoTime()));
+    }
+
+    public long tryAcquireChannel(Long channelId, int permits) {
+        long now = System.nanoTime();
+        return acquire(channelBucket(channelId, now), permits, now);
+    }
+
+    /**
+     * Takes as many of {@code permits} channel permits as are available now.
+     *
+     * @return the number taken, between 0 and {@code permits}
+     */
+    public int tryAcquireChannelUpTo(Long channelId, int permits) {
+        long now = System.nanoTime();
+        return channelBucket(channelId, now).tryAcquireUpTo(permits, now);
+    }
+
+    // Call after a channel's rate limit settings change
+    public void invalidateChannel(Long channelId) {
+        channelBuckets.remove(channelId);
+    }
+
+    // Setting writes on any node reset the channel bucket so new limits apply right away
+    @EventListener
+    void onClusterEvent(ClusterEvent event) {
+        if (event.type() == ClusterEvent.Type.SETTING_CHANGED && event.channelId() != null) {
+            invalidateChannel(event.channelId());
+        } else if (event.type() == ClusterEvent.Type.RESYNC) {
+            channelBuckets.clear();
+        }
+    }
+
+    public static long retryAfterSeconds(long waitNanos) {
+        long seconds = TimeUnit.NANOSECONDS.toSeconds(waitNanos);
+        return TimeUnit.SECONDS.toNanos(seconds) < waitNanos ? seconds + 1 : Math.max(1, seconds);
+    }
+
+    @Scheduled(fixedDelayString = "${larktalk.rate-limit.sweep-interval-ms:60000}")
+    void evictIdleBuckets() {
+        long idleSince = System.nanoTime() - idleExpiryNanos;
+        userBuckets.values().removeIf(bucket -> bucket.isIdleSince(idleSince));
+        batchBuckets.values().removeIf(bucket -> bucket.isIdleSince(idleSince));
+        channelBuckets.values().removeIf(bucket -> bucket.isIdleSince(idleSince));
+    }
+
+    // Requests larger than the burst can never succeed and report Long.MAX_VALUE
+    private long acquire(TokenBucket bucket, int permits, long now) {
+        if (bucket.exceedsCapacity(permits)) {
+            return Long.MAX_VALUE;
+        }
+        return bucket.tryAcquire(permits, now);
+    }
+
+    private TokenBucket channelBucket(Long channelId, long now) {
+        TokenBucket bucket = channelBuckets.get(channelId);
+        if (bucket == null) {
+            // Settings are loaded outside computeIfAbsent so the map bin isn't locked during the query
+            bucket = createChannelBucket(channelId, now);
+            TokenBucket existing = channelBuckets.putIfAbsent(channelId, bucket);
+            if (existing != null) {
+                bucket = existing;
+            }
+        }
+        return bucket;
+    }
+
+    private TokenBucket createChannelBucket(Long channelId, long now) {
+        int perMinute = channelPerMinute;
+        int burst = channelBurst;
+        for (ChannelSetting setting : channelSettingRepository.findByChannelId(channelId)) {
+            if (PER_MINUTE_SETTING.equals(setting.getSettingKey())) {
+                perMinute = parseSetting(channelId, setting, channelPerMinute);
+            }
+            if (BURST_SETTING.equals(setting.getSettingKey())) {
+                burst = parseSetting(channelId, setting, channelBurst);
+            }
+        }
+        return new TokenBucket(perMinute, burst, now);
+    }
+
+    // Settings written before validation existed may hold anything, a bad value must not fail every post
+    private static int parseSetting(Long channelId, ChannelSetting setting, int fallback) {
+        String value = setting.getSettingValue();
+        try {
+            int parsed = Integer.parseInt(value == null ? "" : value.trim());
+            if (parsed >= 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException ignored) {
+            // logged below
+        }
+        log.warn("Channel {} has invalid {} setting '{}', using default {}",
+                channelId, setting.getSettingKey(), value, fallback);
+        return fallback;
+    }
+}
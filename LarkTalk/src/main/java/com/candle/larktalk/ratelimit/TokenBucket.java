@@ -0,0 +1,84 @@
+package com.candle.larktalk.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * Token bucket implemented as GCRA (generic cell rate algorithm).
+ * <p>
+ * The whole state is a single "theoretical arrival time" updated by CAS,
+ * so acquiring permits neither locks nor allocates.
+ */
+final class TokenBucket {
+
+    private static final AtomicLongFieldUpdater<TokenBucket> TAT =
+            AtomicLongFieldUpdater.newUpdater(TokenBucket.class, "tat");
+
+    private final long intervalNanos; // time to refill one token
+    private final long capacityNanos; // intervalNanos * burst
+
+    private volatile long tat;
+
+    // perMinute <= 0 or burst <= 0 means unlimited
+    TokenBucket(int perMinute, int burst, long now) {
+        this.intervalNanos = perMinute > 0 && burst > 0 ? 60_000_000_000L / perMinute : 0;
+        this.capacityNanos = intervalNanos * burst;
+        this.tat = now;
+    }
+
+    boolean isUnlimited() {
+        return intervalNanos == 0;
+    }
+
+    /**
+     * @return 0 when the permits were taken, otherwise nanos until they would be available
+     */
+    long tryAcquire(int permits, long now) {
+        if (isUnlimited()) {
+            return 0;
+        }
+        long increment = intervalNanos * permits;
+        for (;;) {
+            long current = tat;
+            long newTat = Math.max(current, now) + increment;
+            long allowAt = newTat - capacityNanos;
+            if (allowAt > now) {
+                return allowAt - now;
+            }
+            if (TAT.compareAndSet(this, current, newTat)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Takes as many of {@code permits} as are available right now, possibly none.
+     *
+     * @return the number of permits taken
+     */
+    int tryAcquireUpTo(int permits, long now) {
+        if (isUnlimited()) {
+            return permits;
+        }
+        for (;;) {
+            long current = tat;
+            long start = Math.max(current, now);
+            long available = (now + capacityNanos - start) / intervalNanos;
+            int granted = (int) Math.min(permits, Math.max(0, available));
+            if (granted == 0) {
+                return 0;
+            }
+            if (TAT.compareAndSet(this, current, start + intervalNanos * granted)) {
+                return granted;
+            }
+        }
+    }
+
+    boolean exceedsCapacity(int permits) {
+        return intervalNanos * permits > capacityNanos;
+    }
+
+    // A bucket that has been full since 'since' behaves exactly like a new one, so it can be dropped
+    boolean isIdleSince(long since) {
+        return tat <= since;
+    }
+}
@@ -0,0 +1,4 @@
+package com.candle.larktalk.repository;
+
+public record ChannelMemberCount(Long channelId, Long members) {
+}
@@ -2,7 +2,10 @@ package com.candle.larktalk.repository;
 
 import com.candle.larktalk.model.ChannelSetting;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,4 +15,9 @@ public interface ChannelSettingRepository extends JpaRepository<ChannelSetting,
 
     // 2. Get specified setting of channel
     Optional<ChannelSetting> findByChannelIdAndSettingKey(Long channelId, String settingKey);
+
+    // 3. Get settings of many channels at once
+    @Query("select new com.candle.larktalk.repository.ChannelSettingView(s.channel.id, s.settingKey, s.settingValue) " +
+            "from ChannelSetting s where s.channel.id in :channelIds")
+    List<ChannelSettingView> findViewsByChannelIdIn(@Param("channelIds") Collection<Long> channelIds);
 }
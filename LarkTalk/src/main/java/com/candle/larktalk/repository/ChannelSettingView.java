@@ -0,0 +1,4 @@
+package com.candle.larktalk.repository;
+
+public record ChannelSettingView(Long channelId, String settingKey, String settingValue) {
+}
@@ -0,0 +1,4 @@
+package com.candle.larktalk.repository;
+
+public record ChannelView(Long id, String name, String description) {
+}
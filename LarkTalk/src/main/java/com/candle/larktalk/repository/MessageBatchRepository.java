@@ -0,0 +1,69 @@
+package com.candle.larktalk.repository;
+
+import com.candle.larktalk.model.MediaStatus;
+import com.candle.larktalk.model.MessageType;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Bulk inserts for messages. Hibernate can't batch inserts of IDENTITY entities,
+ * so this goes straight to JDBC and reads the generated ids back from the batch.
+ */
+@Repository
+public class MessageBatchRepository {
+
+    private static final String INSERT_SQL = "insert into messages " +
+            "(content, \"timestamp\", type, sender_id, channel_id, media_status) values (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public MessageBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public record NewMessage(Long senderId, Long channelId, String content, MessageType type,
+                             MediaStatus mediaStatus, LocalDateTime timestamp) {}
+
+    /**
+     * Inserts all rows in one transaction and one JDBC batch.
+     *
+     * @return generated ids, in the same order as {@code messages}
+     */
+    @Transactional
+    public List<Long> insertAll(List<NewMessage> messages) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+
+        jdbcTemplate.batchUpdate(con -> con.prepareStatement(INSERT_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        NewMessage m = messages.get(i);
+                        ps.setString(1, m.content());
+                        ps.setTimestamp(2, Timestamp.valueOf(m.timestamp()));
+                        ps.setString(3, m.type().name());
+                        ps.setLong(4, m.senderId());
+                        ps.setLong(5, m.channelId());
+                        ps.setString(6, m.mediaStatus() != null ? m.mediaStatus().name() : null);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return messages.size();
+                    }
+                }, keyHolder);
+
+        return keyHolder.getKeyList().stream()
+                .map(keys -> ((Number) keys.get("id")).longValue())
+                .toList();
+    }
+}
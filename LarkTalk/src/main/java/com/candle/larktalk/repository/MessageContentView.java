@@ -0,0 +1,7 @@
+package com.candle.larktalk.repository;
+
+import com.candle.larktalk.model.MessageType;
+
+// Raw media body with the message type it was posted as
+public record MessageContentView(MessageType type, String content) {
+}
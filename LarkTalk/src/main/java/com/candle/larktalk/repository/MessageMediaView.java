@@ -0,0 +1,8 @@
+package com.candle.larktalk.repository;
+
+import com.candle.larktalk.model.MediaStatus;
+
+// Media processing state without the (potentially large) content column
+public record MessageMediaView(MediaStatus mediaStatus, Long mediaSize, Integer mediaWidth, Integer mediaHeight,
+                               Long mediaDurationMs, String thumbnail) {
+}
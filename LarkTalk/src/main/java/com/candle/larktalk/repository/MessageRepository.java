@@ -1,10 +1,18 @@
 package com.candle.larktalk.repository;
 
+import com.candle.larktalk.model.MediaStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
 import com.candle.larktalk.model.Message;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface MessageRepository extends JpaRepository<Message, Long> {
@@ -13,5 +21,50 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
     List<Message> findByChannelId(Long channelId);
 
     List<Message> findByChannelIdOrderByTimestampAsc(Long channelId);
-}
 
+    @Query("select m.id from Message m where m.channel.id = :channelId order by m.timestamp asc")
+    List<Long> findIdsByChannelIdOrderByTimestampAsc(@Param("channelId") Long channelId);
+
+    // Media bodies (up to max-content-length) stay in the DB, history only carries the metadata
+    @Query("select new com.candle.larktalk.repository.MessageView(m.id, " +
+            "case when m.mediaStatus is null then m.content end, m.timestamp, m.type, " +
+            "s.login, c.name, m.mediaStatus, m.mediaSize, m.mediaWidth, m.mediaHeight, m.mediaDurationMs, m.thumbnail) " +
+            "from Message m join m.sender s join m.channel c where m.id in :ids")
+    List<MessageView> findViewsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select new com.candle.larktalk.repository.MessageMediaView(m.mediaStatus, m.mediaSize, m.mediaWidth, " +
+            "m.mediaHeight, m.mediaDurationMs, m.thumbnail) from Message m where m.id = :id and m.mediaStatus is not null")
+    Optional<MessageMediaView> findMediaById(@Param("id") Long id);
+
+    @Query("select new com.candle.larktalk.repository.MessageContentView(m.type, m.content) " +
+            "from Message m where m.id = :id and m.mediaStatus is not null")
+    Optional<MessageContentView> findMediaContentById(@Param("id") Long id);
+
+    @Query("select max(m.id) from Message m where m.channel.id = :channelId")
+    Long findMaxIdByChannelId(@Param("channelId") Long channelId);
+
+    @Query("select m.id from Message m where m.mediaStatus = com.candle.larktalk.model.MediaStatus.PENDING " +
+            "and m.timestamp < :before order by m.id")
+    List<Long> findPendingMediaIdsBefore(@Param("before") LocalDateTime before);
+
+    // Targeted update so the media pipeline never overwrites content/sender/channel
+    @Transactional
+    @Modifying
+    @Query("update Message m set m.mediaStatus = :status, m.mediaSize = :size, m.mediaWidth = :width, " +
+            "m.mediaHeight = :height, m.mediaDurationMs = :durationMs, m.thumbnail = :thumbnail where m.id = :id")
+    int updateMedia(@Param("id") Long id, @Param("status") MediaStatus status, @Param("size") Long size,
+                    @Param("width") Integer width, @Param("height") Integer height,
+                    @Param("durationMs") Long durationMs, @Param("thumbnail") String thumbnail);
+
+    @Transactional
+    @Modifying
+    @Query("update Message m set m.mediaStatus = :status where m.id = :id")
+    int updateMediaStatus(@Param("id") Long id, @Param("status") MediaStatus status);
+
+    // Only touches rows still PENDING, so a job that finished meanwhile keeps its result
+    @Transactional
+    @Modifying
+    @Query("update Message m set m.mediaStatus = :status " +
+            "where m.id in :ids and m.mediaStatus = com.candle.larktalk.model.MediaStatus.PENDING")
+    int updatePendingMediaStatus(@Param("ids") Collection<Long> ids, @Param("status") MediaStatus status);
+}
@@ -0,0 +1,17 @@
+package com.candle.larktalk.repository;
+
+import com.candle.larktalk.model.MediaStatus;
+import com.candle.larktalk.model.MessageType;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read model of a message for history responses: sender login and channel name
+ * come from a join instead of hydrating User and Channel entities. {@code content}
+ * is null for media messages, their body is served separately.
+ */
+public record MessageView(Long id, String content, LocalDateTime timestamp, MessageType type,
+                          String senderLogin, String channelName,
+                          MediaStatus mediaStatus, Long mediaSize, Integer mediaWidth, Integer mediaHeight,
+                          Long mediaDurationMs, String thumbnail) {
+}
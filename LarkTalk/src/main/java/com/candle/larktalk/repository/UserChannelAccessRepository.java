@@ -2,8 +2,11 @@ package com.candle.larktalk.repository;
 
 import com.candle.larktalk.model.UserChannelAccess;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,4 +18,12 @@ public interface UserChannelAccessRepository extends JpaRepository<UserChannelAc
     List<UserChannelAccess> findByUserId(Long userId);
 
     long countByChannelId(Long channelId);
+
+    @Query("select new com.candle.larktalk.repository.ChannelView(c.id, c.name, c.description) " +
+            "from UserChannelAccess a join a.channel c where a.user.id = :userId")
+    List<ChannelView> findChannelsByUserId(@Param("userId") Long userId);
+
+    @Query("select new com.candle.larktalk.repository.ChannelMemberCount(a.channel.id, count(a)) " +
+            "from UserChannelAccess a where a.channel.id in :channelIds group by a.channel.id")
+    List<ChannelMemberCount> countMembersByChannelIds(@Param("channelIds") Collection<Long> channelIds);
 }
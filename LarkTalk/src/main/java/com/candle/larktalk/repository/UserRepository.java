@@ -1,7 +1,10 @@
 package com.candle.larktalk.repository;
 
 import com.candle.larktalk.model.User;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -10,6 +13,14 @@ import java.util.Optional;
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByLogin(String login);
 
+    // Roles are lazy, use this when they are needed (profile, admin checks)
+    @EntityGraph(attributePaths = "roles")
+    Optional<User> findWithRolesByLogin(String login);
+
+    // For write paths that only need a reference to the user
+    @Query("select u.id from User u where u.login = :login")
+    Optional<Long> findIdByLogin(@Param("login") String login);
+
     boolean existsByLogin(String login);
     boolean existsByEmail(String email);
 }
@@ -0,0 +1,57 @@
+package com.candle.larktalk.startup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aot.AotDetector;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Records when each startup phase event fires, measured from JVM start, and logs
+ * the timeline once the application is ready.
+ * <p>
+ * Registered in {@code main} rather than as a bean so it also sees the events
+ * published before the context exists.
+ */
+public class StartupTimings implements ApplicationListener<ApplicationEvent> {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupTimings.class);
+
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    private volatile boolean reported;
+
+    public StartupTimings() {
+        phases.put("Main", uptimeMs());
+    }
+
+    public static long uptimeMs() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationEvent event) {
+        // Keeps receiving every event (e.g. per-request ones) after startup, so bail out without locking
+        if (reported) {
+            return;
+        }
+        synchronized (this) {
+            // Only the first occurrence counts, e.g. ContextRefreshedEvent may fire again for child contexts
+            phases.putIfAbsent(event.getClass().getSimpleName().replace("Event", ""), uptimeMs());
+
+            if (event instanceof ApplicationReadyEvent) {
+                reported = true;
+                log.info("Startup phases (ms since JVM start, AOT {}): {}",
+                        AotDetector.useGeneratedArtifacts() ? "on" : "off",
+                        phases.entrySet().stream()
+                                .map(e -> e.getKey() + "=" + e.getValue())
+                                .collect(Collectors.joining(", ")));
+            }
+        }
+    }
+}
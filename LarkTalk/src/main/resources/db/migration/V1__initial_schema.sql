@@ -0,0 +1,55 @@
+-- Schema as previously generated by spring.jpa.hibernate.ddl-auto=update.
+-- Existing databases are baselined at this version, so V1 only runs on empty ones.
+
+create table roles (
+    id          bigint generated by default as identity primary key,
+    name        varchar(255) not null unique,
+    description varchar(255)
+);
+
+create table users (
+    id            bigint generated by default as identity primary key,
+    login         varchar(255) not null unique,
+    nickname      varchar(255),
+    password_hash varchar(255),
+    email         varchar(255) unique,
+    created_at    timestamp(6),
+    last_login    timestamp(6)
+);
+
+create table user_roles (
+    user_id bigint not null references users (id),
+    role_id bigint not null references roles (id),
+    primary key (user_id, role_id)
+);
+
+create table channels (
+    id            bigint generated by default as identity primary key,
+    name          varchar(255),
+    password_hash varchar(255),
+    description   varchar(255),
+    created_at    timestamp(6)
+);
+
+create table channel_settings (
+    id            bigint generated by default as identity primary key,
+    setting_key   varchar(255),
+    setting_value varchar(255),
+    channel_id    bigint references channels (id)
+);
+
+create table user_channel_access (
+    id         bigint generated by default as identity primary key,
+    user_id    bigint references users (id),
+    channel_id bigint references channels (id),
+    joined_at  timestamp(6)
+);
+
+create table messages (
+    id          bigint generated by default as identity primary key,
+    content     text,
+    "timestamp" timestamp(6),
+    type        varchar(255),
+    sender_id   bigint references users (id),
+    channel_id  bigint references channels (id)
+);
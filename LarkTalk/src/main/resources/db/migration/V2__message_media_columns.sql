@@ -0,0 +1,7 @@
+-- Media pipeline results, see MediaProcessingService
+alter table messages add column if not exists media_status      varchar(255);
+alter table messages add column if not exists media_size        bigint;
+alter table messages add column if not exists media_width       integer;
+alter table messages add column if not exists media_height      integer;
+alter table messages add column if not exists media_duration_ms bigint;
+alter table messages add column if not exists thumbnail         text;
@@ -0,0 +1,21 @@
+-- MessageRepository.findByChannelIdOrderByTimestampAsc (channel history)
+create index if not exists idx_messages_channel_timestamp on messages (channel_id, "timestamp");
+
+-- One membership row per user and channel, keeping the earliest join.
+-- The unique index leads with user_id, so it also serves findByUserId.
+delete from user_channel_access a
+    using user_channel_access b
+    where a.user_id = b.user_id and a.channel_id = b.channel_id and a.id > b.id;
+alter table user_channel_access
+    add constraint uk_user_channel_access_user_channel unique (user_id, channel_id);
+
+-- UserChannelAccessRepository.countByChannelId
+create index if not exists idx_user_channel_access_channel on user_channel_access (channel_id);
+
+-- One value per setting key, keeping the latest write.
+-- Serves findByChannelId and findByChannelIdAndSettingKey.
+delete from channel_settings a
+    using channel_settings b
+    where a.channel_id = b.channel_id and a.setting_key = b.setting_key and a.id < b.id;
+alter table channel_settings
+    add constraint uk_channel_settings_channel_key unique (channel_id, setting_key);
@@ -0,0 +1,2 @@
+-- MediaProcessingService.recoverPending (startup sweep of media left PENDING by a stopped node)
+create index if not exists idx_messages_media_pending on messages ("timestamp") where media_status = 'PENDING';
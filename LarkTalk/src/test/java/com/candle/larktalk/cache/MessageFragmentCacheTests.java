@@ -0,0 +1,103 @@
+package com.candle.larktalk.cache;
+
+import com.candle.larktalk.cluster.ClusterEvent;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MessageFragmentCacheTests {
+
+    @Test
+    void evictsOldestFirstWhenOverBudget() {
+        MessageFragmentCache cache = new MessageFragmentCache(30, 30);
+
+        cache.put(1L, new byte[10]);
+        cache.put(2L, new byte[10]);
+        cache.put(3L, new byte[10]);
+        cache.put(4L, new byte[10]);
+
+        assertNull(cache.get(1L));
+        assertNotNull(cache.get(2L));
+        assertNotNull(cache.get(4L));
+        assertEquals(30, cache.sizeInBytes());
+    }
+
+    @Test
+    void replacingAnEntryAccountsForTheDifference() {
+        MessageFragmentCache cache = new MessageFragmentCache(100, 100);
+
+        cache.put(1L, new byte[10]);
+        cache.put(1L, new byte[25]);
+
+        assertEquals(25, cache.sizeInBytes());
+        assertEquals(25, cache.get(1L).length);
+    }
+
+    @Test
+    void skipsFragmentsOverEntryCap() {
+        MessageFragmentCache cache = new MessageFragmentCache(100, 20);
+        cache.put(1L, new byte[10]);
+
+        cache.put(2L, new byte[21]);
+
+        assertNull(cache.get(2L));
+        assertNotNull(cache.get(1L));
+        assertEquals(10, cache.sizeInBytes());
+    }
+
+    @Test
+    void invalidateFreesBytesAndReputIsEvictable() {
+        MessageFragmentCache cache = new MessageFragmentCache(20, 20);
+        cache.put(1L, new byte[10]);
+
+        cache.invalidate(1L);
+        assertNull(cache.get(1L));
+        assertEquals(0, cache.sizeInBytes());
+
+        cache.put(1L, new byte[10]);
+        cache.put(2L, new byte[10]);
+        cache.put(3L, new byte[10]);
+        assertNull(cache.get(1L));
+        assertEquals(20, cache.sizeInBytes());
+    }
+
+    @Test
+    void clearKeepsCacheUsable() {
+        MessageFragmentCache cache = new MessageFragmentCache(20, 20);
+        cache.put(1L, new byte[10]);
+        cache.put(2L, new byte[10]);
+
+        cache.clear();
+        assertNull(cache.get(1L));
+        assertEquals(0, cache.sizeInBytes());
+
+        // Eviction still works after a clear, the budget isn't stuck above the limit
+        cache.put(3L, new byte[10]);
+        cache.put(4L, new byte[10]);
+        cache.put(5L, new byte[10]);
+        assertNull(cache.get(3L));
+        assertArrayEquals(new byte[10], cache.get(5L));
+        assertEquals(20, cache.sizeInBytes());
+    }
+
+    @Test
+    void clusterEventsInvalidate() {
+        MessageFragmentCache cache = new MessageFragmentCache(100, 100);
+        cache.put(1L, new byte[10]);
+        cache.put(2L, new byte[10]);
+
+        cache.onClusterEvent(ClusterEvent.messageUpdated(null, 1L));
+        assertNull(cache.get(1L));
+        assertNotNull(cache.get(2L));
+
+        cache.onClusterEvent(ClusterEvent.messageCreated(7L, 3L));
+        assertNotNull(cache.get(2L));
+
+        cache.onClusterEvent(new ClusterEvent(ClusterEvent.Type.RESYNC, null, null, true));
+        assertNull(cache.get(2L));
+        assertEquals(0, cache.sizeInBytes());
+    }
+}
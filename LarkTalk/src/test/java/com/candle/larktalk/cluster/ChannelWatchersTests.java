@@ -0,0 +1,43 @@
+package com.candle.larktalk.cluster;
+
+import com.candle.larktalk.repository.MessageRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ChannelWatchersTests {
+
+    private final MessageRepository messageRepository = mock(MessageRepository.class);
+    private final ChannelWatchers watchers = new ChannelWatchers(messageRepository, 25_000, 100);
+
+    @Test
+    void newMessageWakesWaitersBehindIt() {
+        when(messageRepository.findMaxIdByChannelId(1L)).thenReturn(5L);
+        DeferredResult<ResponseEntity<?>> waiting = watchers.await(1L, 5);
+        assertFalse(waiting.hasResult());
+
+        watchers.onClusterEvent(ClusterEvent.messageCreated(1L, 6L));
+
+        assertEquals(ResponseEntity.ok(new ChannelWatchers.Update(1L, 6L)), waiting.getResult());
+    }
+
+    @Test
+    void resyncRereadsWatchedChannelsAndWakesWaiters() {
+        when(messageRepository.findMaxIdByChannelId(1L)).thenReturn(5L);
+        when(messageRepository.findMaxIdByChannelId(2L)).thenReturn(9L);
+        DeferredResult<ResponseEntity<?>> behind = watchers.await(1L, 5);
+        DeferredResult<ResponseEntity<?>> upToDate = watchers.await(2L, 9);
+
+        // Messages 6-8 landed on another node while notifications were lost
+        when(messageRepository.findMaxIdByChannelId(1L)).thenReturn(8L);
+        watchers.onClusterEvent(new ClusterEvent(ClusterEvent.Type.RESYNC, null, null, true));
+
+        assertEquals(ResponseEntity.ok(new ChannelWatchers.Update(1L, 8L)), behind.getResult());
+        assertFalse(upToDate.hasResult());
+    }
+}
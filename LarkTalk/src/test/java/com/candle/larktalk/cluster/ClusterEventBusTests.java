@@ -0,0 +1,115 @@
+package com.candle.larktalk.cluster;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClusterEventBusTests {
+
+    @Test
+    void encodeDecodeRoundTrip() {
+        for (ClusterEvent event : List.of(
+                ClusterEvent.messageCreated(7L, 42L),
+                ClusterEvent.messageUpdated(null, 43L),
+                ClusterEvent.membershipChanged(7L, 3L),
+                ClusterEvent.settingChanged(7L, null))) {
+            ClusterEvent decoded = ClusterEventBus.decode(ClusterEventBus.encode(event));
+
+            assertEquals(new ClusterEvent(event.type(), event.channelId(), event.subjectId(), true), decoded);
+        }
+    }
+
+    @Test
+    void newMessagesCoalesceToHighestIdPerChannel() {
+        NotifyRecorder jdbc = new NotifyRecorder();
+        ClusterEventBus bus = bus(jdbc);
+
+        bus.publish(ClusterEvent.messageCreated(1L, 10L));
+        bus.publish(ClusterEvent.messageCreated(1L, 12L));
+        bus.publish(ClusterEvent.messageCreated(1L, 11L));
+        bus.publish(ClusterEvent.messageCreated(2L, 5L));
+        bus.publish(ClusterEvent.messageUpdated(1L, 10L));
+        bus.publish(ClusterEvent.messageUpdated(1L, 10L));
+        bus.flush();
+
+        List<ClusterEvent> sent = decodeAll(jdbc.payloads);
+        assertEquals(3, sent.size());
+        assertTrue(sent.contains(new ClusterEvent(ClusterEvent.Type.MESSAGE_CREATED, 1L, 12L, true)));
+        assertTrue(sent.contains(new ClusterEvent(ClusterEvent.Type.MESSAGE_CREATED, 2L, 5L, true)));
+        assertTrue(sent.contains(new ClusterEvent(ClusterEvent.Type.MESSAGE_UPDATED, 1L, 10L, true)));
+    }
+
+    @Test
+    void payloadsAreSplitBelowLimit() {
+        List<ClusterEvent> events = IntStream.range(0, 1000)
+                .mapToObj(i -> ClusterEvent.messageUpdated(1_000_000L + i, 2_000_000L + i))
+                .toList();
+
+        List<ClusterEventBus.Payload> payloads = ClusterEventBus.toPayloads("node1234", events, 200);
+
+        assertTrue(payloads.size() > 1);
+        List<ClusterEvent> unpacked = new ArrayList<>();
+        for (ClusterEventBus.Payload payload : payloads) {
+            assertTrue(payload.text().length() <= 200, payload.text());
+            assertTrue(payload.text().startsWith("node1234;"));
+            assertEquals(payload.events().size(), payload.text().split(";").length - 1);
+            unpacked.addAll(payload.events());
+        }
+        assertEquals(events, unpacked);
+    }
+
+    @Test
+    void failedNotifyIsRetriedOnNextFlush() {
+        NotifyRecorder jdbc = new NotifyRecorder();
+        ClusterEventBus bus = bus(jdbc);
+
+        bus.publish(ClusterEvent.messageCreated(1L, 10L));
+        jdbc.failing = true;
+        bus.flush();
+        assertTrue(jdbc.payloads.isEmpty());
+
+        // A newer message queued meanwhile supersedes the requeued one
+        bus.publish(ClusterEvent.messageCreated(1L, 11L));
+        jdbc.failing = false;
+        bus.flush();
+
+        assertEquals(List.of(new ClusterEvent(ClusterEvent.Type.MESSAGE_CREATED, 1L, 11L, true)), decodeAll(jdbc.payloads));
+    }
+
+    private static ClusterEventBus bus(JdbcTemplate jdbc) {
+        return new ClusterEventBus(event -> { }, jdbc, null, true);
+    }
+
+    private static List<ClusterEvent> decodeAll(List<String> payloads) {
+        List<ClusterEvent> events = new ArrayList<>();
+        for (String payload : payloads) {
+            String[] parts = payload.split(";");
+            for (int i = 1; i < parts.length; i++) {
+                events.add(ClusterEventBus.decode(parts[i]));
+            }
+        }
+        return events;
+    }
+
+    // Stands in for pg_notify: records payloads, or fails like a lost connection
+    private static class NotifyRecorder extends JdbcTemplate {
+        final List<String> payloads = new ArrayList<>();
+        boolean failing;
+
+        @Override
+        public <T> T queryForObject(String sql, Class<T> requiredType, Object... args) {
+            if (failing) {
+                throw new DataAccessResourceFailureException("connection lost");
+            }
+            payloads.add((String) args[1]);
+            return null;
+        }
+    }
+}
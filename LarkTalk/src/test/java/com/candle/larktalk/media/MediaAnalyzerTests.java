@@ -0,0 +1,111 @@
+package com.candle.larktalk.media;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MediaAnalyzerTests {
+
+    @Test
+    void readsImagesWithinPixelCap() throws IOException {
+        MediaAnalyzer analyzer = new MediaAnalyzer(256, 65536, 400);
+
+        BufferedImage image = analyzer.readImage(new MediaPayload("image/png", png(20, 20)));
+
+        assertEquals(20, image.getWidth());
+        assertEquals(20, image.getHeight());
+    }
+
+    @Test
+    void rejectsImagesOverPixelCap() throws IOException {
+        MediaAnalyzer analyzer = new MediaAnalyzer(256, 65536, 400);
+
+        assertThrows(MediaRejectedException.class, () -> analyzer.readImage(new MediaPayload("image/png", png(21, 20))));
+    }
+
+    @Test
+    void unreadableImagesAreRejected() throws IOException {
+        MediaAnalyzer analyzer = new MediaAnalyzer(256, 65536, 25_000_000);
+        byte[] png = png(64, 64);
+
+        assertThrows(MediaRejectedException.class,
+                () -> analyzer.readImage(new MediaPayload("image/png", new byte[]{1, 2, 3})));
+        // Header is intact, the pixel data is cut off: the decoder's IOException becomes a rejection
+        MediaRejectedException truncated = assertThrows(MediaRejectedException.class,
+                () -> analyzer.readImage(new MediaPayload("image/png", Arrays.copyOf(png, png.length / 2))));
+        assertTrue(truncated.getCause() instanceof IOException);
+    }
+
+    @Test
+    void thumbnailFitsEdge() throws IOException {
+        MediaAnalyzer analyzer = new MediaAnalyzer(32, 65536, 25_000_000);
+
+        String thumbnail = analyzer.thumbnail(noise(128, 64));
+
+        assertNotNull(thumbnail);
+        assertTrue(thumbnail.startsWith("data:image/jpeg;base64,"));
+        BufferedImage scaled = ImageIO.read(new ByteArrayInputStream(MediaPayload.parse(thumbnail).bytes()));
+        assertEquals(32, scaled.getWidth());
+        assertEquals(16, scaled.getHeight());
+    }
+
+    @Test
+    void thumbnailOverByteCapIsDropped() {
+        MediaAnalyzer analyzer = new MediaAnalyzer(256, 100, 25_000_000);
+
+        assertNull(analyzer.thumbnail(noise(128, 128)));
+    }
+
+    @Test
+    void wavDurationFromFrameCount() throws IOException {
+        MediaAnalyzer analyzer = new MediaAnalyzer(256, 65536, 25_000_000);
+        AudioFormat format = new AudioFormat(8000f, 16, 1, true, false);
+        int frames = 12_000;
+        ByteArrayOutputStream wav = new ByteArrayOutputStream();
+        AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(new byte[frames * 2]), format, frames),
+                AudioFileFormat.Type.WAVE, wav);
+
+        assertEquals(1500L, analyzer.audioDurationMs(new MediaPayload("audio/wav", wav.toByteArray())));
+    }
+
+    @Test
+    void unknownAudioFormatHasNoDuration() {
+        MediaAnalyzer analyzer = new MediaAnalyzer(256, 65536, 25_000_000);
+
+        assertNull(analyzer.audioDurationMs(new MediaPayload("audio/ogg", "OggS not really".getBytes())));
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(noise(width, height), "png", out);
+        return out.toByteArray();
+    }
+
+    // Random pixels so the encoders can't compress the image away
+    private static BufferedImage noise(int width, int height) {
+        Random random = new Random(42);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        return image;
+    }
+}
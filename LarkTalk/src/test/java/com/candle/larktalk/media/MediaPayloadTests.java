@@ -0,0 +1,62 @@
+package com.candle.larktalk.media;
+
+import com.candle.larktalk.model.MessageType;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MediaPayloadTests {
+
+    @Test
+    void parsesBase64DataUri() {
+        MediaPayload payload = MediaPayload.parse("data:image/png;base64,AQID");
+
+        assertEquals("image/png", payload.mimeType());
+        assertArrayEquals(new byte[]{1, 2, 3}, payload.bytes());
+    }
+
+    @Test
+    void rejectsMalformedDataUris() {
+        for (String content : Arrays.asList(null, "", "AQID", "data:image/png,AQID", "data:image/png;base64",
+                "image/png;base64,AQID")) {
+            assertThrows(MediaRejectedException.class, () -> MediaPayload.parse(content), String.valueOf(content));
+        }
+    }
+
+    @Test
+    void rejectsInvalidBase64() {
+        assertThrows(MediaRejectedException.class, () -> MediaPayload.parse("data:image/png;base64,@@@"));
+        assertThrows(MediaRejectedException.class, () -> MediaPayload.parse("data:image/png;base64,AQ=D"));
+    }
+
+    @Test
+    void declaredTypeMustMatchMessageType() {
+        assertDoesNotThrow(() -> MediaPayload.checkDeclaredType("data:image/png;base64,AQID", MessageType.IMAGE));
+        assertDoesNotThrow(() -> MediaPayload.checkDeclaredType("data:Audio/WAV;base64,AQID", MessageType.AUDIO));
+        assertDoesNotThrow(() -> MediaPayload.checkDeclaredType("data:video/mp4;base64,AQID", MessageType.VIDEO));
+
+        assertThrows(MediaRejectedException.class,
+                () -> MediaPayload.checkDeclaredType("data:text/html;base64,AQID", MessageType.IMAGE));
+        assertThrows(MediaRejectedException.class,
+                () -> MediaPayload.checkDeclaredType("data:audio/wav;base64,AQID", MessageType.VIDEO));
+        assertThrows(MediaRejectedException.class,
+                () -> MediaPayload.checkDeclaredType("data:image/;base64,AQID", MessageType.IMAGE));
+        assertThrows(MediaRejectedException.class,
+                () -> MediaPayload.checkDeclaredType("data:image/png;base64,AQID", MessageType.TEXT));
+    }
+
+    @Test
+    void svgAndMismatchedTypesAreNotServedInline() {
+        assertTrue(MediaPayload.isSafeInline("image/jpeg", MessageType.IMAGE));
+        assertFalse(MediaPayload.isSafeInline("image/svg+xml", MessageType.IMAGE));
+        assertFalse(MediaPayload.isSafeInline("text/html", MessageType.IMAGE));
+        assertFalse(MediaPayload.isSafeInline("image/png", MessageType.AUDIO));
+    }
+}
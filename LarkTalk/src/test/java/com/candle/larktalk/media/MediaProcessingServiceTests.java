@@ -0,0 +1,117 @@
+package com.candle.larktalk.media;
+
+import com.candle.larktalk.cluster.ClusterEventBus;
+import com.candle.larktalk.model.Channel;
+import com.candle.larktalk.model.MediaStatus;
+import com.candle.larktalk.model.Message;
+import com.candle.larktalk.model.MessageType;
+import com.candle.larktalk.repository.MessageRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MediaProcessingServiceTests {
+
+    private final MessageRepository messageRepository = mock(MessageRepository.class);
+    private final ClusterEventBus clusterEventBus = mock(ClusterEventBus.class);
+    private final MediaPipelineMetrics metrics = new MediaPipelineMetrics();
+    private MediaProcessingService service;
+
+    @AfterEach
+    void shutdown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void fullQueueMarksMessageDegraded() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        when(messageRepository.findById(anyLong())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.empty();
+        });
+        service = service(1, 1, 3);
+
+        // One job running on the only worker, one in the queue, the third doesn't fit
+        assertTrue(service.submit(1L));
+        assertTrue(service.submit(2L));
+        assertFalse(service.submit(3L));
+        release.countDown();
+
+        verify(messageRepository).updateMediaStatus(3L, MediaStatus.DEGRADED);
+        assertEquals(1L, metrics.rejected.sum());
+        assertEquals(1L, metrics.degraded.sum());
+        assertEquals(3L, metrics.submitted.sum());
+    }
+
+    @Test
+    void dataAccessFailuresAreRetriedUntilMaxAttempts() {
+        when(messageRepository.findById(1L)).thenThrow(new DataAccessResourceFailureException("connection lost"));
+        service = service(1, 10, 3);
+
+        service.submit(1L);
+
+        verify(messageRepository, timeout(5000)).updateMediaStatus(1L, MediaStatus.FAILED);
+        verify(messageRepository, times(3)).findById(1L);
+        assertEquals(2L, metrics.retried.sum());
+        assertEquals(1L, metrics.failed.sum());
+    }
+
+    @Test
+    void undecodableMediaFailsWithoutRetry() {
+        when(messageRepository.findById(1L)).thenReturn(Optional.of(message(1L, "data:image/png;base64,AQID")));
+        service = service(1, 10, 3);
+
+        service.submit(1L);
+
+        verify(messageRepository, timeout(5000)).updateMediaStatus(1L, MediaStatus.FAILED);
+        verify(messageRepository, times(1)).findById(1L);
+        assertEquals(0L, metrics.retried.sum());
+    }
+
+    @Test
+    void recoverPendingResubmitsStaleRows() {
+        when(messageRepository.findPendingMediaIdsBefore(any())).thenReturn(List.of(5L, 6L));
+        when(messageRepository.findById(anyLong())).thenReturn(Optional.empty());
+        service = service(1, 10, 3);
+
+        service.recoverPending();
+
+        verify(messageRepository, timeout(5000)).findById(5L);
+        verify(messageRepository, timeout(5000)).findById(6L);
+        assertEquals(2L, metrics.submitted.sum());
+    }
+
+    private MediaProcessingService service(int workers, int queueCapacity, int maxAttempts) {
+        return new MediaProcessingService(messageRepository, new MediaAnalyzer(256, 65536, 25_000_000), metrics,
+                clusterEventBus, workers, queueCapacity, maxAttempts, 1, 14_000_000, 60);
+    }
+
+    private static Message message(Long id, String content) {
+        Channel channel = new Channel();
+        channel.setId(1L);
+        Message message = new Message();
+        message.setId(id);
+        message.setType(MessageType.IMAGE);
+        message.setContent(content);
+        message.setChannel(channel);
+        return message;
+    }
+}
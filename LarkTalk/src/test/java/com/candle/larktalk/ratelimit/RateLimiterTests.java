@@ -0,0 +1,73 @@
+package com.candle.larktalk.ratelimit;
+
+import com.candle.larktalk.model.ChannelSetting;
+import com.candle.larktalk.repository.ChannelSettingRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RateLimiterTests {
+
+    private final ChannelSettingRepository settings = mock(ChannelSettingRepository.class);
+
+    // user 1/min burst 2, batch 1/min burst 1, channel 1/min burst 3, lookup 1/min burst 2
+    private RateLimiter limiter() {
+        return new RateLimiter(settings, 1, 2, 1, 1, 1, 3, 1, 2, 600_000);
+    }
+
+    @Test
+    void unseenLoginsShareTheLookupBucket() {
+        RateLimiter limiter = limiter();
+
+        assertEquals(0, limiter.tryAcquireUser("ghost1", 1));
+        assertEquals(0, limiter.tryAcquireBatch("ghost2"));
+        assertTrue(limiter.tryAcquireUser("ghost3", 1) > 0);
+    }
+
+    @Test
+    void registeredUsersGetTheirOwnBuckets() {
+        RateLimiter limiter = limiter();
+        limiter.registerUser("alice");
+
+        assertEquals(0, limiter.tryAcquireUser("alice", 1));
+        assertEquals(0, limiter.tryAcquireUser("alice", 1));
+        assertTrue(limiter.tryAcquireUser("alice", 1) > 0);
+        assertEquals(0, limiter.tryAcquireBatch("alice"));
+        assertTrue(limiter.tryAcquireBatch("alice") > 0);
+
+        // The lookup bucket was never touched
+        assertEquals(0, limiter.tryAcquireUser("bob", 1));
+        assertEquals(0, limiter.tryAcquireUser("bob", 1));
+    }
+
+    @Test
+    void channelSettingsOverrideDefaults() {
+        when(settings.findByChannelId(1L)).thenReturn(List.of(setting(RateLimiter.BURST_SETTING, "1")));
+        RateLimiter limiter = limiter();
+
+        assertEquals(0, limiter.tryAcquireChannel(1L, 1));
+        assertTrue(limiter.tryAcquireChannel(1L, 1) > 0);
+    }
+
+    @Test
+    void invalidChannelSettingsFallBackToDefaults() {
+        when(settings.findByChannelId(1L)).thenReturn(List.of(
+                setting(RateLimiter.PER_MINUTE_SETTING, "fast"),
+                setting(RateLimiter.BURST_SETTING, "-5")));
+        RateLimiter limiter = limiter();
+
+        assertEquals(3, limiter.tryAcquireChannelUpTo(1L, 10));
+    }
+
+    private static ChannelSetting setting(String key, String value) {
+        ChannelSetting setting = new ChannelSetting();
+        setting.setSettingKey(key);
+        setting.setSettingValue(value);
+        return setting;
+    }
+}
@@ -0,0 +1,140 @@
+package com.candle.larktalk.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives the GCRA bucket with explicit clock values, 60/min means one token per second.
+ */
+class TokenBucketTests {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long START = 1_000 * SECOND;
+
+    @Test
+    void allowsBurstThenAsksToWaitOneInterval() {
+        TokenBucket bucket = new TokenBucket(60, 3, START);
+
+        assertEquals(0, bucket.tryAcquire(1, START));
+        assertEquals(0, bucket.tryAcquire(1, START));
+        assertEquals(0, bucket.tryAcquire(1, START));
+        assertEquals(SECOND, bucket.tryAcquire(1, START));
+    }
+
+    @Test
+    void refillsOneTokenPerInterval() {
+        TokenBucket bucket = new TokenBucket(60, 2, START);
+        assertEquals(0, bucket.tryAcquire(2, START));
+
+        assertEquals(SECOND / 2, bucket.tryAcquire(1, START + SECOND / 2));
+        assertEquals(0, bucket.tryAcquire(1, START + SECOND));
+        assertEquals(SECOND, bucket.tryAcquire(1, START + SECOND));
+    }
+
+    @Test
+    void rejectedAttemptDoesNotConsumeTokens() {
+        TokenBucket bucket = new TokenBucket(60, 2, START);
+        assertEquals(0, bucket.tryAcquire(2, START));
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(bucket.tryAcquire(1, START) > 0);
+        }
+        assertEquals(0, bucket.tryAcquire(1, START + SECOND));
+    }
+
+    @Test
+    void multiplePermitsWaitForAllOfThem() {
+        TokenBucket bucket = new TokenBucket(60, 5, START);
+        assertEquals(0, bucket.tryAcquire(5, START));
+
+        assertEquals(3 * SECOND, bucket.tryAcquire(3, START));
+        assertEquals(0, bucket.tryAcquire(3, START + 3 * SECOND));
+    }
+
+    @Test
+    void idleTimeDoesNotAccumulateBeyondBurst() {
+        TokenBucket bucket = new TokenBucket(60, 2, START);
+
+        long later = START + 3600 * SECOND;
+        assertEquals(0, bucket.tryAcquire(2, later));
+        assertEquals(SECOND, bucket.tryAcquire(1, later));
+    }
+
+    @Test
+    void acquireUpToTakesWhatIsAvailable() {
+        TokenBucket bucket = new TokenBucket(60, 5, START);
+
+        assertEquals(5, bucket.tryAcquireUpTo(8, START));
+        assertEquals(0, bucket.tryAcquireUpTo(8, START));
+        assertEquals(2, bucket.tryAcquireUpTo(8, START + 2 * SECOND + SECOND / 2));
+        assertEquals(1, bucket.tryAcquireUpTo(1, START + 3 * SECOND));
+    }
+
+    @Test
+    void exceedsCapacityOnlyAboveBurst() {
+        TokenBucket bucket = new TokenBucket(60, 10, START);
+
+        assertFalse(bucket.exceedsCapacity(10));
+        assertTrue(bucket.exceedsCapacity(11));
+    }
+
+    @Test
+    void isIdleOnceFullyRefilled() {
+        TokenBucket bucket = new TokenBucket(60, 3, START);
+        assertTrue(bucket.isIdleSince(START));
+
+        bucket.tryAcquire(2, START);
+        assertFalse(bucket.isIdleSince(START + SECOND));
+        assertTrue(bucket.isIdleSince(START + 2 * SECOND));
+    }
+
+    @Test
+    void zeroRateOrBurstIsUnlimited() {
+        for (TokenBucket bucket : new TokenBucket[]{new TokenBucket(0, 10, START), new TokenBucket(60, 0, START)}) {
+            assertTrue(bucket.isUnlimited());
+            assertFalse(bucket.exceedsCapacity(1_000_000));
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(0, bucket.tryAcquire(100, START));
+                assertEquals(100, bucket.tryAcquireUpTo(100, START));
+            }
+        }
+    }
+
+    @Test
+    void concurrentAcquiresNeverExceedBurst() throws InterruptedException {
+        int burst = 100;
+        TokenBucket bucket = new TokenBucket(1, burst, START);
+        AtomicInteger granted = new AtomicInteger();
+        CountDownLatch ready = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+
+        for (int t = 0; t < 8; t++) {
+            pool.execute(() -> {
+                try {
+                    ready.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 100; i++) {
+                    if (bucket.tryAcquire(1, START) == 0) {
+                        granted.incrementAndGet();
+                    }
+                }
+            });
+        }
+        ready.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(burst, granted.get());
+    }
+}
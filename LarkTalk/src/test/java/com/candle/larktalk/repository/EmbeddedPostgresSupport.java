@@ -0,0 +1,77 @@
+package com.candle.larktalk.repository;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * One embedded PostgreSQL server for all database tests in the JVM. Each test class gets its
+ * own database on it, created, migrated with Flyway and seeded on first use, so classes don't
+ * see each other's rows.
+ */
+final class EmbeddedPostgresSupport {
+
+    private static final EmbeddedPostgres postgres = start();
+    private static final Map<String, DataSource> databases = new ConcurrentHashMap<>();
+
+    private EmbeddedPostgresSupport() {
+    }
+
+    /**
+     * The migrated database of {@code testClass}. {@code seed} runs once, when it is created.
+     */
+    static DataSource database(Class<?> testClass, Consumer<JdbcTemplate> seed) {
+        return databases.computeIfAbsent(databaseName(testClass), name -> {
+            new JdbcTemplate(postgres.getPostgresDatabase()).execute("create database " + name);
+            DataSource dataSource = postgres.getDatabase("postgres", name);
+            Flyway.configure().dataSource(dataSource).load().migrate();
+            seed.accept(new JdbcTemplate(dataSource));
+            return dataSource;
+        });
+    }
+
+    /**
+     * Points the Spring datasource at the database of {@code testClass}, for use from a
+     * {@code @DynamicPropertySource} method.
+     */
+    static void registerDatasource(DynamicPropertyRegistry registry, Class<?> testClass, Consumer<JdbcTemplate> seed) {
+        database(testClass, seed);
+        String name = databaseName(testClass);
+        registry.add("spring.datasource.url", () -> postgres.getJdbcUrl("postgres", name));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "postgres");
+    }
+
+    static void registerDatasource(DynamicPropertyRegistry registry, Class<?> testClass) {
+        registerDatasource(registry, testClass, jdbc -> { });
+    }
+
+    private static String databaseName(Class<?> testClass) {
+        return testClass.getSimpleName().toLowerCase(Locale.ROOT);
+    }
+
+    private static EmbeddedPostgres start() {
+        try {
+            EmbeddedPostgres pg = EmbeddedPostgres.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    pg.close();
+                } catch (IOException ignored) {
+                    // the JVM is exiting anyway
+                }
+            }, "embedded-postgres-shutdown"));
+            return pg;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
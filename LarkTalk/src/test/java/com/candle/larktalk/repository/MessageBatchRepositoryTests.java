@@ -0,0 +1,71 @@
+package com.candle.larktalk.repository;
+
+import com.candle.larktalk.model.MediaStatus;
+import com.candle.larktalk.model.MessageType;
+import com.candle.larktalk.repository.MessageBatchRepository.NewMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * The batch controller maps generated ids back to request items by position, so
+ * {@link MessageBatchRepository#insertAll} must return them in input order.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(MessageBatchRepository.class)
+class MessageBatchRepositoryTests {
+
+    @Autowired
+    private MessageBatchRepository messageBatchRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        EmbeddedPostgresSupport.registerDatasource(registry, MessageBatchRepositoryTests.class, seed -> {
+            seed.update("insert into users (login) values ('alice'), ('bob')");
+            seed.update("insert into channels (name) values ('general'), ('random')");
+        });
+    }
+
+    @Test
+    void idsAreReturnedInInputOrder() {
+        LocalDateTime now = LocalDateTime.of(2026, 3, 1, 12, 0);
+        List<NewMessage> rows = IntStream.range(0, 200)
+                .mapToObj(i -> new NewMessage(1L + i % 2, 1L + i / 3 % 2, "batch " + i,
+                        i % 5 == 0 ? MessageType.IMAGE : MessageType.TEXT,
+                        i % 5 == 0 ? MediaStatus.PENDING : null, now.plusSeconds(i)))
+                .toList();
+
+        List<Long> ids = messageBatchRepository.insertAll(rows);
+
+        assertEquals(rows.size(), ids.size());
+        assertEquals(rows.size(), new HashSet<>(ids).size());
+        for (int i = 0; i < rows.size(); i++) {
+            NewMessage row = rows.get(i);
+            Long id = ids.get(i);
+            assertEquals(row.content(), jdbcTemplate.queryForObject("select content from messages where id = ?", String.class, id));
+            assertEquals(row.channelId(), jdbcTemplate.queryForObject("select channel_id from messages where id = ?", Long.class, id));
+            String mediaStatus = jdbcTemplate.queryForObject("select media_status from messages where id = ?", String.class, id);
+            if (row.mediaStatus() == null) {
+                assertNull(mediaStatus);
+            } else {
+                assertEquals(row.mediaStatus().name(), mediaStatus);
+            }
+        }
+    }
+}
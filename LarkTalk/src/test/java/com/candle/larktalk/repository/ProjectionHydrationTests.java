@@ -0,0 +1,253 @@
+package com.candle.larktalk.repository;
+
+import com.candle.larktalk.cache.MessageFragmentCache;
+import com.candle.larktalk.model.Channel;
+import com.candle.larktalk.model.ChannelSetting;
+import com.candle.larktalk.model.MediaStatus;
+import com.candle.larktalk.model.Message;
+import com.candle.larktalk.model.MessageType;
+import com.candle.larktalk.model.Role;
+import com.candle.larktalk.model.User;
+import com.candle.larktalk.model.UserChannelAccess;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Counts entity hydrations and statements on the read paths, both at the repository and
+ * through the HTTP endpoints, so a projection that silently turns back into an entity load
+ * (or an N+1) fails the build.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "larktalk.cluster.enabled=false"
+})
+@AutoConfigureMockMvc
+class ProjectionHydrationTests {
+
+    private static final String AUTH = "Bearer fake-jwt-token-for-alice";
+
+    private static Long channelId;
+    private static Long userId;
+    private static Long mediaMessageId;
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private MessageFragmentCache fragmentCache;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private RoleRepository roleRepository;
+    @Autowired
+    private ChannelRepository channelRepository;
+    @Autowired
+    private ChannelSettingRepository channelSettingRepository;
+    @Autowired
+    private UserChannelAccessRepository accessRepository;
+    @Autowired
+    private MessageRepository messageRepository;
+
+    private Statistics statistics;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        EmbeddedPostgresSupport.registerDatasource(registry, ProjectionHydrationTests.class);
+    }
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        if (channelId == null) {
+            transactionTemplate.executeWithoutResult(status -> seed());
+        }
+        statistics.clear();
+    }
+
+    @Test
+    void historyReadHydratesNoEntities() {
+        List<Long> ids = messageRepository.findIdsByChannelIdOrderByTimestampAsc(channelId);
+        statistics.clear();
+
+        List<MessageView> views = messageRepository.findViewsByIdIn(ids);
+
+        assertEquals(11, views.size());
+        assertEquals("alice", views.get(0).senderLogin());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void myChannelsReadHydratesNoEntities() {
+        List<ChannelView> channels = accessRepository.findChannelsByUserId(userId);
+        List<Long> channelIds = channels.stream().map(ChannelView::id).toList();
+        channelSettingRepository.findViewsByChannelIdIn(channelIds);
+        accessRepository.countMembersByChannelIds(channelIds);
+
+        assertEquals(1, channels.size());
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(3, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void loadingMessageLeavesSenderAndChannelUnloaded() {
+        Long messageId = messageRepository.findIdsByChannelIdOrderByTimestampAsc(channelId).get(0);
+        statistics.clear();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Message message = messageRepository.findById(messageId).orElseThrow();
+            // Lombok's toString/equals/hashCode must not walk the lazy associations
+            message.toString();
+            message.hashCode();
+            assertFalse(Hibernate.isInitialized(message.getSender()));
+            assertFalse(Hibernate.isInitialized(message.getChannel()));
+        });
+
+        assertEquals(1, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void loginLookupDoesNotLoadRoles() {
+        transactionTemplate.executeWithoutResult(status -> {
+            User user = userRepository.findByLogin("alice").orElseThrow();
+            user.toString();
+            user.hashCode();
+            assertFalse(Hibernate.isInitialized(user.getRoles()));
+        });
+
+        assertEquals(1, statistics.getEntityLoadCount());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void profileLookupFetchesRolesInOneQuery() {
+        User user = userRepository.findWithRolesByLogin("alice").orElseThrow();
+
+        assertTrue(Hibernate.isInitialized(user.getRoles()));
+        assertEquals(1, user.getRoles().size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void myChannelsEndpointHydratesNoEntities() throws Exception {
+        mockMvc.perform(get("/api/channels/my").header("Authorization", AUTH))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("general"));
+
+        // user id lookup + channels, settings and member counts
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(4, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void historyEndpointHydratesNoEntities() throws Exception {
+        fragmentCache.clear();
+
+        MvcResult started = mockMvc.perform(get("/api/messages").param("chatId", channelId.toString())
+                        .header("Authorization", AUTH))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(11))
+                .andExpect(jsonPath("$[10].content").value(nullValue()))
+                .andExpect(jsonPath("$[10].media.status").value("READY"));
+
+        // ids, then the views of the cache misses
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void mediaEndpointHydratesNoEntities() throws Exception {
+        mockMvc.perform(get("/api/messages/" + mediaMessageId + "/media").header("Authorization", AUTH))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.width").value(640));
+
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    private void seed() {
+        Role role = new Role();
+        role.setName("user");
+        roleRepository.save(role);
+
+        User alice = new User();
+        alice.setLogin("alice");
+        alice.setPasswordHash("hash");
+        alice.setRoles(new HashSet<>(Set.of(role)));
+        userRepository.save(alice);
+
+        Channel channel = new Channel();
+        channel.setName("general");
+        channelRepository.save(channel);
+
+        ChannelSetting setting = new ChannelSetting();
+        setting.setChannel(channel);
+        setting.setSettingKey("active");
+        setting.setSettingValue("True");
+        channelSettingRepository.save(setting);
+
+        UserChannelAccess access = new UserChannelAccess();
+        access.setUser(alice);
+        access.setChannel(channel);
+        access.setJoinedAt(LocalDateTime.now());
+        accessRepository.save(access);
+
+        for (int i = 0; i < 10; i++) {
+            Message message = new Message();
+            message.setContent("message " + i);
+            message.setType(MessageType.TEXT);
+            message.setTimestamp(LocalDateTime.now().plusSeconds(i));
+            message.setSender(alice);
+            message.setChannel(channel);
+            messageRepository.save(message);
+        }
+
+        Message media = new Message();
+        media.setContent("data:image/png;base64,AAAA");
+        media.setType(MessageType.IMAGE);
+        media.setTimestamp(LocalDateTime.now().plusSeconds(10));
+        media.setSender(alice);
+        media.setChannel(channel);
+        media.setMediaStatus(MediaStatus.READY);
+        media.setMediaWidth(640);
+        media.setMediaHeight(480);
+        mediaMessageId = messageRepository.save(media).getId();
+
+        channelId = channel.getId();
+        userId = alice.getId();
+    }
+}
@@ -0,0 +1,180 @@
+package com.candle.larktalk.repository;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.data.jpa.test.autoconfigure.DataJpaTest;
+import org.springframework.boot.jdbc.test.autoconfigure.AutoConfigureTestDatabase;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.StatementCallback;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Seeds a migrated database on the shared embedded PostgreSQL ({@link EmbeddedPostgresSupport}),
+ * calls the hot repository methods and EXPLAINs the exact SQL Hibernate sent for them
+ * (captured by a {@link StatementInspector}).
+ * Sequential scans are disabled for the session, so a plan still containing one means no
+ * usable index exists.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "com.candle.larktalk.repository.RepositoryQueryPlanTests$CapturingInspector"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class RepositoryQueryPlanTests {
+
+    private static final JdbcTemplate jdbc =
+            new JdbcTemplate(EmbeddedPostgresSupport.database(RepositoryQueryPlanTests.class, RepositoryQueryPlanTests::seed));
+
+    @Autowired
+    private MessageRepository messageRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private UserChannelAccessRepository accessRepository;
+    @Autowired
+    private ChannelSettingRepository channelSettingRepository;
+
+    public static class CapturingInspector implements StatementInspector {
+        static final List<String> statements = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            statements.add(sql);
+            return sql;
+        }
+    }
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        EmbeddedPostgresSupport.registerDatasource(registry, RepositoryQueryPlanTests.class, RepositoryQueryPlanTests::seed);
+    }
+
+    // Arguments are the values bound to the statement's parameters, in order
+    @TestFactory
+    Stream<DynamicTest> hotQueriesUseIndexes() {
+        return Stream.of(
+                indexed("MessageRepository.findByChannelIdOrderByTimestampAsc",
+                        () -> messageRepository.findByChannelIdOrderByTimestampAsc(1L), 1L),
+                indexed("MessageRepository.findIdsByChannelIdOrderByTimestampAsc",
+                        () -> messageRepository.findIdsByChannelIdOrderByTimestampAsc(1L), 1L),
+                indexed("MessageRepository.findViewsByIdIn",
+                        () -> messageRepository.findViewsByIdIn(List.of(1L, 2L, 3L)), 1L, 2L, 3L),
+                indexed("MessageRepository.findMaxIdByChannelId",
+                        () -> messageRepository.findMaxIdByChannelId(1L), 1L),
+                indexed("MessageRepository.findPendingMediaIdsBefore",
+                        () -> messageRepository.findPendingMediaIdsBefore(LocalDateTime.of(2026, 1, 1, 0, 0)),
+                        LocalDateTime.of(2026, 1, 1, 0, 0)),
+                indexed("UserRepository.findIdByLogin",
+                        () -> userRepository.findIdByLogin("alice"), "alice"),
+                indexed("UserRepository.findWithRolesByLogin",
+                        () -> userRepository.findWithRolesByLogin("alice"), "alice"),
+                indexed("UserChannelAccessRepository.findByUserId",
+                        () -> accessRepository.findByUserId(1L), 1L),
+                indexed("UserChannelAccessRepository.findByUserIdAndChannelId",
+                        () -> accessRepository.findByUserIdAndChannelId(1L, 1L), 1L, 1L),
+                indexed("UserChannelAccessRepository.countByChannelId",
+                        () -> accessRepository.countByChannelId(1L), 1L),
+                indexed("UserChannelAccessRepository.findChannelsByUserId",
+                        () -> accessRepository.findChannelsByUserId(1L), 1L),
+                indexed("UserChannelAccessRepository.countMembersByChannelIds",
+                        () -> accessRepository.countMembersByChannelIds(List.of(1L, 2L)), 1L, 2L),
+                indexed("ChannelSettingRepository.findByChannelId",
+                        () -> channelSettingRepository.findByChannelId(1L), 1L),
+                indexed("ChannelSettingRepository.findByChannelIdAndSettingKey",
+                        () -> channelSettingRepository.findByChannelIdAndSettingKey(1L, "active"), 1L, "active"),
+                indexed("ChannelSettingRepository.findViewsByChannelIdIn",
+                        () -> channelSettingRepository.findViewsByChannelIdIn(List.of(1L, 2L)), 1L, 2L)
+        );
+    }
+
+    @Test
+    void membershipIsUniquePerUserAndChannel() {
+        assertThrows(DuplicateKeyException.class,
+                () -> jdbc.update("insert into user_channel_access (user_id, channel_id) values (2, 1)"));
+    }
+
+    @Test
+    void settingKeyIsUniquePerChannel() {
+        assertThrows(DuplicateKeyException.class,
+                () -> jdbc.update("insert into channel_settings (channel_id, setting_key, setting_value) values (1, 'active', 'False')"));
+    }
+
+    private DynamicTest indexed(String name, Runnable query, Object... params) {
+        return DynamicTest.dynamicTest(name, () -> {
+            CapturingInspector.statements.clear();
+            query.run();
+            List<String> captured = List.copyOf(CapturingInspector.statements);
+            assertEquals(1, captured.size(), () -> "Expected one statement for " + name + ": " + captured);
+
+            String sql = captured.get(0);
+            String plan = explain(sql, params);
+            assertFalse(plan.contains("Seq Scan"), () -> "Sequential scan for " + name + ": " + sql + "\n" + plan);
+        });
+    }
+
+    // Prepares the statement as Hibernate sent it, so the plan is for the real SQL and parameter types
+    private String explain(String sql, Object... params) {
+        StringBuilder prepared = new StringBuilder();
+        int count = 0;
+        for (char c : sql.toCharArray()) {
+            if (c == '?') {
+                prepared.append('$').append(++count);
+            } else {
+                prepared.append(c);
+            }
+        }
+        assertEquals(params.length, count, () -> "Parameter count mismatch for: " + sql);
+
+        String args = Arrays.stream(params)
+                .map(p -> "'" + p.toString().replace("'", "''") + "'")
+                .collect(Collectors.joining(", "));
+        return jdbc.execute((StatementCallback<String>) statement -> {
+            statement.execute("set enable_seqscan = off");
+            statement.execute("prepare plan_check as " + prepared);
+            try {
+                List<String> lines = new ArrayList<>();
+                try (ResultSet rs = statement.executeQuery("explain execute plan_check" + (params.length == 0 ? "" : "(" + args + ")"))) {
+                    while (rs.next()) {
+                        lines.add(rs.getString(1));
+                    }
+                }
+                return String.join("\n", lines);
+            } finally {
+                statement.execute("deallocate plan_check");
+                statement.execute("reset enable_seqscan");
+            }
+        });
+    }
+
+    private static void seed(JdbcTemplate seed) {
+        seed.update("insert into roles (name) values ('user')");
+        seed.update("insert into users (login) values ('alice'), ('bob')");
+        seed.update("insert into user_roles (user_id, role_id) values (1, 1), (2, 1)");
+        seed.update("insert into channels (name) values ('general'), ('random')");
+        seed.update("insert into user_channel_access (user_id, channel_id) values (1, 1), (1, 2), (2, 1)");
+        seed.update("insert into channel_settings (channel_id, setting_key, setting_value) values (1, 'active', 'True')");
+        seed.update("insert into messages (content, \"timestamp\", type, sender_id, channel_id) " +
+                "select 'hello ' || i, now() - i * interval '1 minute', 'TEXT', 1 + i % 2, 1 + i % 2 " +
+                "from generate_series(1, 1000) i");
+        seed.execute("analyze");
+    }
+}